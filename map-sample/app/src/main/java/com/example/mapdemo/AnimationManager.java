@@ -16,44 +16,85 @@
 
 package com.example.mapdemo;
 
-import android.os.Handler;
-import android.os.Looper;
+import android.util.Log;
 
-/** Simple manager for UI-thread animation. All methods must be invoked on the UI thread only. */
+/**
+ * Simple manager for UI-thread animation. All methods must be invoked on the UI thread only.
+ *
+ * <p>Frames are driven by the shared {@link AnimationScheduler}, so they are aligned with the
+ * display's vsync and timed from the actual frame time rather than from when a delayed message
+ * happens to run. The frame rate set with {@link #setFrameRateFps} is a cap: frames are run at most
+ * that often, and when the UI thread falls behind, the missed frames are skipped rather than run
+ * back to back. Skipped frames are counted as dropped, and the achieved frame rate is logged when
+ * the animation stops.
+ */
 public class AnimationManager {
+  private static final String TAG = AnimationManager.class.getSimpleName();
   private static final double INITIAL_FRAME_RATE_FPS = 60.0;
 
-  private final Handler animationHandler;
-  private final Runnable animationRunnable;
+  /**
+   * How early a vsync may arrive and still run a frame. Vsync timestamps jitter slightly, and
+   * without this a cap equal to the display's refresh rate would skip every other vsync.
+   */
+  private static final long FRAME_TIME_SLACK_NANOS = 2_000_000;
+
+  private final Runnable frameRunnable;
+  private final AnimationScheduler scheduler;
 
   private double frameRateFps;
   private boolean running;
 
+  /** The animation ticking this manager, or null while stopped or paused. */
+  private AnimationScheduler.Animation animation;
+
+  /** The frame time at or after which the next frame runs, or 0 to run on the next vsync. */
+  private long nextFrameTimeNanos;
+
+  private long startTimeNanos;
+  private long frameCount;
+  private long droppedFrameCount;
+
   public AnimationManager(final Runnable frameRunnable) {
+    this.frameRunnable = frameRunnable;
     frameRateFps = INITIAL_FRAME_RATE_FPS;
     running = false;
-    animationHandler = new Handler(Looper.getMainLooper());
-
-    animationRunnable =
-        new Runnable() {
-          @Override
-          public void run() {
-            if (!running) {
-              return;
-            }
-            frameRunnable.run();
-            requestAnimationFrame();
-          }
-        };
+    scheduler = AnimationScheduler.getInstance();
   }
 
-  private void requestAnimationFrame() {
+  private boolean onFrame(long frameTimeNanos) {
     if (frameRateFps <= 0.0) {
+      // Paused until a positive frame rate is set.
+      animation = null;
+      return false;
+    }
+
+    long frameIntervalNanos = (long) (1_000_000_000L / frameRateFps);
+    if (startTimeNanos == 0) {
+      startTimeNanos = frameTimeNanos;
+    }
+    if (nextFrameTimeNanos == 0) {
+      nextFrameTimeNanos = frameTimeNanos;
+    }
+    if (frameTimeNanos + FRAME_TIME_SLACK_NANOS >= nextFrameTimeNanos) {
+      long lateNanos = frameTimeNanos - nextFrameTimeNanos;
+      if (lateNanos >= frameIntervalNanos) {
+        // Behind schedule: skip the missed frames, and schedule from this frame instead.
+        droppedFrameCount += lateNanos / frameIntervalNanos;
+        nextFrameTimeNanos = frameTimeNanos;
+      }
+      nextFrameTimeNanos += frameIntervalNanos;
+      frameCount++;
+      frameRunnable.run();
+    }
+    return true;
+  }
+
+  private void requestAnimationFrames() {
+    if (frameRateFps <= 0.0 || animation != null) {
       return;
     }
 
-    long delayMs = (long) Math.floor(1000.0 / frameRateFps);
-    animationHandler.postDelayed(animationRunnable, delayMs);
+    animation = scheduler.post(this::onFrame);
   }
 
   public void startAnimation() {
@@ -61,8 +102,12 @@ public class AnimationManager {
       return;
     }
 
-    requestAnimationFrame();
     running = true;
+    startTimeNanos = 0;
+    nextFrameTimeNanos = 0;
+    frameCount = 0;
+    droppedFrameCount = 0;
+    requestAnimationFrames();
   }
 
   public void stopAnimation() {
@@ -70,15 +115,44 @@ public class AnimationManager {
       return;
     }
 
-    animationHandler.removeCallbacks(animationRunnable);
+    if (animation != null) {
+      animation.cancel();
+      animation = null;
+    }
     running = false;
+    if (frameCount > 0) {
+      Log.d(
+          TAG,
+          String.format(
+              "Animated %d frames at %.1f fps (cap %.1f fps), %d frames dropped",
+              frameCount, getAchievedFrameRateFps(), frameRateFps, droppedFrameCount));
+    }
   }
 
   public void setFrameRateFps(double frameRateFps) {
     this.frameRateFps = frameRateFps;
+    if (running && animation == null) {
+      // Frames were paused by a frame rate of zero. Resume without counting the pause as dropped.
+      nextFrameTimeNanos = 0;
+      requestAnimationFrames();
+    }
   }
 
   public double getFrameRateFps() {
     return frameRateFps;
   }
+
+  /** Returns the average frame rate since the animation was last started. */
+  public double getAchievedFrameRateFps() {
+    if (startTimeNanos == 0) {
+      return 0.0;
+    }
+    long elapsedNanos = System.nanoTime() - startTimeNanos;
+    return elapsedNanos <= 0 ? 0.0 : frameCount * 1e9 / elapsedNanos;
+  }
+
+  /** Returns the number of frames skipped since the animation was last started. */
+  public long getDroppedFrameCount() {
+    return droppedFrameCount;
+  }
 }
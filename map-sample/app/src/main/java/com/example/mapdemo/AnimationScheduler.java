@@ -0,0 +1,155 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import android.view.Choreographer;
+import android.view.animation.Interpolator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the UI-thread animations of the demos from a single {@link Choreographer} frame callback.
+ *
+ * <p>Animations register with {@link #post} or {@link #animate}, and are ticked once per frame in
+ * the order they were started, all with the same frame time. However many animations are running,
+ * there is one frame callback per frame, and none while nothing is animating. Each animation can be
+ * cancelled through the {@link Animation} returned when it's started.
+ *
+ * <p>All methods must be invoked on the UI thread only.
+ */
+public final class AnimationScheduler implements Choreographer.FrameCallback {
+
+  /** Called on every frame while an animation started with {@link #post} is running. */
+  public interface FrameCallback {
+    /**
+     * @param frameTimeNanos the time the frame started rendering, in the {@link System#nanoTime()}
+     *     time base
+     * @return whether the animation should run on the next frame as well
+     */
+    boolean onFrame(long frameTimeNanos);
+  }
+
+  /** Receives the values of an animation started with {@link #animate}. */
+  public interface UpdateListener {
+    /**
+     * @param value the interpolated progress of the animation. This is 0 at the start and 1 at the
+     *     end, but may leave that range in between, e.g. with an overshooting interpolator.
+     */
+    void onUpdate(float value);
+  }
+
+  /** A running animation. */
+  public final class Animation {
+    private final FrameCallback callback;
+    private boolean running = true;
+
+    private Animation(FrameCallback callback) {
+      this.callback = callback;
+    }
+
+    /** Stops the animation before its next frame. Does nothing if it has already stopped. */
+    public void cancel() {
+      running = false;
+    }
+
+    public boolean isRunning() {
+      return running;
+    }
+  }
+
+  private static AnimationScheduler instance;
+
+  private final Choreographer choreographer = Choreographer.getInstance();
+  private final List<Animation> animations = new ArrayList<>();
+  private boolean frameCallbackPosted;
+
+  /** Returns the scheduler of the UI thread. */
+  public static AnimationScheduler getInstance() {
+    if (instance == null) {
+      instance = new AnimationScheduler();
+    }
+    return instance;
+  }
+
+  private AnimationScheduler() {}
+
+  /** Runs {@code callback} on every frame, starting with the next one, until it returns false. */
+  public Animation post(FrameCallback callback) {
+    Animation animation = new Animation(callback);
+    animations.add(animation);
+    if (!frameCallbackPosted) {
+      choreographer.postFrameCallback(this);
+      frameCallbackPosted = true;
+    }
+    return animation;
+  }
+
+  /**
+   * Animates from 0 to 1 over {@code durationMillis}, starting with the next frame. The last value
+   * passed to {@code listener} is always the one at the end of the animation, unless the animation
+   * is cancelled.
+   */
+  public Animation animate(
+      long durationMillis, Interpolator interpolator, UpdateListener listener) {
+    long durationNanos = durationMillis * 1_000_000;
+    return post(
+        new FrameCallback() {
+          private long startTimeNanos = -1;
+
+          @Override
+          public boolean onFrame(long frameTimeNanos) {
+            if (startTimeNanos < 0) {
+              startTimeNanos = frameTimeNanos;
+            }
+            long elapsedNanos = frameTimeNanos - startTimeNanos;
+            float fraction =
+                durationNanos <= 0 ? 1f : Math.min(1f, (float) elapsedNanos / durationNanos);
+            listener.onUpdate(interpolator.getInterpolation(fraction));
+            return fraction < 1f;
+          }
+        });
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    // frameCallbackPosted stays set while ticking, so animations started from a tick don't post a
+    // second callback. They wait for the next frame, so an animation's first frame time is always
+    // after it was started.
+    int count = animations.size();
+    for (int i = 0; i < count; i++) {
+      Animation animation = animations.get(i);
+      if (animation.running && !animation.callback.onFrame(frameTimeNanos)) {
+        animation.running = false;
+      }
+    }
+
+    // Drop the animations that finished or were cancelled, keeping the others in order.
+    int kept = 0;
+    for (int i = 0; i < animations.size(); i++) {
+      Animation animation = animations.get(i);
+      if (animation.running) {
+        animations.set(kept++, animation);
+      }
+    }
+    animations.subList(kept, animations.size()).clear();
+
+    frameCallbackPosted = !animations.isEmpty();
+    if (frameCallbackPosted) {
+      choreographer.postFrameCallback(this);
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.example.mapdemo;
 
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.tracing.Trace;
 import com.example.mapdemo.EdgeToEdgeUtil.EdgeToEdgeMarginConfig;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -30,9 +31,16 @@ import com.google.common.collect.ImmutableList;
 /** This shows how to create a simple activity with a map and a marker on the map. */
 public class BasicMapDemoActivity extends AppCompatActivity implements OnMapReadyCallback {
 
+  /**
+   * Async trace section from activity creation to the first fully rendered map frame, measured by
+   * the first map frame benchmark in the :baselineprofile module.
+   */
+  public static final String FIRST_MAP_FRAME_TRACE = "FirstMapFrame";
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
+    Trace.beginAsyncSection(FIRST_MAP_FRAME_TRACE, /* cookie= */ 0);
     if (getIntent()
         .getBooleanExtra(
             ActivityIntents.EXTRA_SHOULD_USE_NAVIGATION_FLAVOR_FOR_DEMO,
@@ -58,7 +66,14 @@ public class BasicMapDemoActivity extends AppCompatActivity implements OnMapRead
   @Override
   public void onMapReady(GoogleMap map) {
     map.setOnMapLoadedCallback(
-        () -> map.addMarker(new MarkerOptions().position(new LatLng(0, 0)).title("Marker")));
+        () -> {
+          map.addMarker(new MarkerOptions().position(new LatLng(0, 0)).title("Marker"));
+          // Reports the first fully rendered map frame, which shows up as "Fully drawn" in logcat
+          // and as the time to full display in the startup benchmarks of the :baselineprofile
+          // module.
+          Trace.endAsyncSection(FIRST_MAP_FRAME_TRACE, /* cookie= */ 0);
+          reportFullyDrawn();
+        });
   }
 
   private void setMarginForEdgeToEdgeSupport() {
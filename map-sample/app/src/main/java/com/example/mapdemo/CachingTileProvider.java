@@ -0,0 +1,385 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TileProvider} that caches the encoded tiles of another provider, so tiles the map asks
+ * for again, e.g. after panning back, aren't rendered or downloaded again.
+ *
+ * <p>Tiles are kept in memory up to a total number of bytes, and optionally in a directory on disk,
+ * also up to a total number of bytes. Only cache downloaded tiles on disk: tiles that are rendered
+ * or read from a local archive are as cheap to produce again as to read back. When the memory cache
+ * is full, the least recently used tiles are evicted first, except that among
+ * the oldest tiles, the one whose zoom is furthest from the {@linkplain #setCurrentZoom current
+ * zoom} goes first. When the disk cache is full, the tiles that were least recently written or read
+ * are deleted first. Concurrent requests for the same tile are coalesced into a single request to
+ * the wrapped provider.
+ *
+ * <p>Tiles can also be loaded ahead of the map's requests with {@link #prefetch}, e.g. by a {@link
+ * TilePrefetcher}. {@link #getHitRate()} tells how many of the map's requests were served from
+ * memory.
+ */
+public class CachingTileProvider implements TileProvider {
+
+  private static final String TAG = CachingTileProvider.class.getSimpleName();
+
+  /** The number of least recently used tiles considered when picking one to evict. */
+  private static final int EVICTION_CANDIDATES = 16;
+
+  /** The memory accounted for each cached tile on top of its data. */
+  private static final int TILE_OVERHEAD_BYTES = 64;
+
+  /**
+   * The fraction of its maximum size the disk cache is trimmed to, so that it isn't trimmed again
+   * on every write.
+   */
+  private static final float DISK_TRIM_RATIO = 0.75f;
+
+  private final TileProvider delegate;
+  private final long maxMemoryBytes;
+  @Nullable private final File diskCacheDir;
+  private final long maxDiskBytes;
+
+  // @GuardedBy("memoryCache")
+  private final LinkedHashMap<Long, Tile> memoryCache =
+      new LinkedHashMap<>(
+          /* initialCapacity= */ 64, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+
+  // @GuardedBy("memoryCache")
+  private long memoryBytes;
+
+  private final ConcurrentHashMap<Long, CompletableFuture<Tile>> inFlightRequests =
+      new ConcurrentHashMap<>();
+
+  private volatile float currentZoom = -1;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final Object diskLock = new Object();
+
+  // The total size of the files in diskCacheDir, or -1 until it has been measured.
+  // @GuardedBy("diskLock")
+  private long diskBytes = -1;
+
+  /**
+   * Creates a provider that only caches tiles in memory.
+   *
+   * @param delegate the provider whose tiles are cached
+   * @param maxMemoryBytes the maximum total size of the tiles kept in memory
+   */
+  public CachingTileProvider(TileProvider delegate, long maxMemoryBytes) {
+    this(delegate, maxMemoryBytes, /* diskCacheDir= */ null, /* maxDiskBytes= */ 0);
+  }
+
+  /**
+   * @param delegate the provider whose tiles are cached
+   * @param maxMemoryBytes the maximum total size of the tiles kept in memory
+   * @param diskCacheDir the directory in which tiles are also stored, or null to only cache tiles
+   *     in memory. Use a subdirectory of the app's cache directory, which the system trims when
+   *     storage runs low.
+   * @param maxDiskBytes the maximum total size of the files in {@code diskCacheDir}
+   */
+  public CachingTileProvider(
+      TileProvider delegate, long maxMemoryBytes, @Nullable File diskCacheDir, long maxDiskBytes) {
+    this.delegate = delegate;
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.diskCacheDir = diskCacheDir;
+    this.maxDiskBytes = maxDiskBytes;
+    if (diskCacheDir != null && !diskCacheDir.isDirectory() && !diskCacheDir.mkdirs()) {
+      Log.w(TAG, "Could not create the tile cache directory " + diskCacheDir);
+    }
+  }
+
+  /**
+   * Sets the zoom the map is shown at, which decides which tiles are kept when memory runs out.
+   * Until it is set, the zoom of the most recently requested tile is used.
+   */
+  public void setCurrentZoom(float zoom) {
+    currentZoom = zoom;
+  }
+
+  @Override
+  @Nullable
+  public Tile getTile(int x, int y, int zoom) {
+    long key = key(x, y, zoom);
+    Tile tile = getFromMemory(key);
+    if (tile != null) {
+      hitCount.incrementAndGet();
+      return tile;
+    }
+    missCount.incrementAndGet();
+    return load(key, x, y, zoom);
+  }
+
+  /**
+   * Loads the tile into memory unless it's there already, so a later {@link #getTile} call for it
+   * is served from memory. Blocks until the tile is loaded.
+   */
+  public void prefetch(int x, int y, int zoom) {
+    long key = key(x, y, zoom);
+    if (getFromMemory(key) == null) {
+      load(key, x, y, zoom);
+    }
+  }
+
+  /**
+   * Returns the fraction of the map's tile requests that were served from memory since the last
+   * call to {@link #resetHitRate()}, or 0 if there were none.
+   */
+  public float getHitRate() {
+    long hits = hitCount.get();
+    long requests = hits + missCount.get();
+    return requests == 0 ? 0 : (float) hits / requests;
+  }
+
+  public void resetHitRate() {
+    hitCount.set(0);
+    missCount.set(0);
+  }
+
+  @Nullable
+  private Tile load(long key, int x, int y, int zoom) {
+    CompletableFuture<Tile> request = new CompletableFuture<>();
+    CompletableFuture<Tile> inFlightRequest = inFlightRequests.putIfAbsent(key, request);
+    if (inFlightRequest != null) {
+      // Another thread is already fetching this tile.
+      return inFlightRequest.join();
+    }
+    try {
+      // The tile may have been cached by a request that finished after the caller's lookup.
+      Tile tile = getFromMemory(key);
+      if (tile == null) {
+        tile = fetch(x, y, zoom);
+      }
+      if (tile != null) {
+        putInMemory(key, zoom, tile);
+      }
+      request.complete(tile);
+      return tile;
+    } catch (RuntimeException e) {
+      request.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightRequests.remove(key);
+    }
+  }
+
+  /** Removes every tile from memory and from disk. */
+  public void clear() {
+    synchronized (memoryCache) {
+      memoryCache.clear();
+      memoryBytes = 0;
+    }
+    synchronized (diskLock) {
+      File[] files = diskCacheDir != null ? diskCacheDir.listFiles() : null;
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      diskBytes = -1;
+    }
+  }
+
+  @Nullable
+  private Tile fetch(int x, int y, int zoom) {
+    Tile tile = readFromDisk(x, y, zoom);
+    if (tile != null) {
+      return tile;
+    }
+    tile = delegate.getTile(x, y, zoom);
+    // NO_TILE is only cached in memory, since the wrapped provider may have tiles there later.
+    if (tile != null && tile != NO_TILE) {
+      writeToDisk(x, y, zoom, tile);
+    }
+    return tile;
+  }
+
+  @Nullable
+  private Tile getFromMemory(long key) {
+    synchronized (memoryCache) {
+      return memoryCache.get(key);
+    }
+  }
+
+  private void putInMemory(long key, int zoom, Tile tile) {
+    float zoomToKeep = currentZoom >= 0 ? currentZoom : zoom;
+    synchronized (memoryCache) {
+      Tile previous = memoryCache.put(key, tile);
+      if (previous != null) {
+        memoryBytes -= sizeOf(previous);
+      }
+      memoryBytes += sizeOf(tile);
+      while (memoryBytes > maxMemoryBytes && memoryCache.size() > 1) {
+        evictOne(zoomToKeep);
+      }
+    }
+  }
+
+  // @GuardedBy("memoryCache")
+  private void evictOne(float zoomToKeep) {
+    // Iteration goes from the least to the most recently used tile. The tile that was just added is
+    // the most recently used one, so it is never evicted while older tiles are left.
+    Map.Entry<Long, Tile> victim = null;
+    float victimZoomDistance = -1;
+    Iterator<Map.Entry<Long, Tile>> iterator = memoryCache.entrySet().iterator();
+    for (int i = 0; i < EVICTION_CANDIDATES && i < memoryCache.size() - 1; i++) {
+      Map.Entry<Long, Tile> candidate = iterator.next();
+      float zoomDistance = Math.abs(zoomOf(candidate.getKey()) - zoomToKeep);
+      if (zoomDistance > victimZoomDistance) {
+        victim = candidate;
+        victimZoomDistance = zoomDistance;
+      }
+    }
+    if (victim == null) {
+      return;
+    }
+    memoryBytes -= sizeOf(victim.getValue());
+    memoryCache.remove(victim.getKey());
+  }
+
+  @Nullable
+  private Tile readFromDisk(int x, int y, int zoom) {
+    if (diskCacheDir == null) {
+      return null;
+    }
+    File file = diskFile(x, y, zoom);
+    try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+      int width = input.readInt();
+      int height = input.readInt();
+      byte[] data = new byte[input.readInt()];
+      input.readFully(data);
+      // Marks the tile as recently used, so trimming the disk cache keeps it.
+      file.setLastModified(System.currentTimeMillis());
+      return new Tile(width, height, data);
+    } catch (FileNotFoundException e) {
+      return null;
+    } catch (IOException e) {
+      Log.w(TAG, "Discarding unreadable cached tile " + file, e);
+      file.delete();
+      return null;
+    }
+  }
+
+  private void writeToDisk(int x, int y, int zoom, Tile tile) {
+    if (diskCacheDir == null || tile.data == null) {
+      return;
+    }
+    File file = diskFile(x, y, zoom);
+    // Write to a temporary file first, so a partially written tile is never read.
+    File temporaryFile =
+        new File(diskCacheDir, file.getName() + "." + Thread.currentThread().getId());
+    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temporaryFile))) {
+      output.writeInt(tile.width);
+      output.writeInt(tile.height);
+      output.writeInt(tile.data.length);
+      output.write(tile.data);
+    } catch (IOException e) {
+      Log.w(TAG, "Could not cache tile " + file, e);
+      temporaryFile.delete();
+      return;
+    }
+    if (!temporaryFile.renameTo(file)) {
+      temporaryFile.delete();
+      return;
+    }
+    synchronized (diskLock) {
+      diskBytes = diskBytes < 0 ? measureDiskCache() : diskBytes + file.length();
+      if (diskBytes > maxDiskBytes) {
+        trimDiskCache();
+      }
+    }
+  }
+
+  // @GuardedBy("diskLock")
+  private long measureDiskCache() {
+    long bytes = 0;
+    File[] files = diskCacheDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        bytes += file.length();
+      }
+    }
+    return bytes;
+  }
+
+  /** Deletes the least recently used tiles until the disk cache is below its trim size. */
+  // @GuardedBy("diskLock")
+  private void trimDiskCache() {
+    File[] files = diskCacheDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    // Read the timestamps once, rather than on every comparison.
+    long[][] lastModifiedAndIndex = new long[files.length][];
+    long bytes = 0;
+    for (int i = 0; i < files.length; i++) {
+      lastModifiedAndIndex[i] = new long[] {files[i].lastModified(), i};
+      bytes += files[i].length();
+    }
+    Arrays.sort(lastModifiedAndIndex, (a, b) -> Long.compare(a[0], b[0]));
+    long targetBytes = (long) (maxDiskBytes * DISK_TRIM_RATIO);
+    for (long[] entry : lastModifiedAndIndex) {
+      if (bytes <= targetBytes) {
+        break;
+      }
+      File file = files[(int) entry[1]];
+      long length = file.length();
+      if (file.delete()) {
+        bytes -= length;
+      }
+    }
+    diskBytes = bytes;
+  }
+
+  private File diskFile(int x, int y, int zoom) {
+    return new File(diskCacheDir, zoom + "_" + x + "_" + y + ".tile");
+  }
+
+  private static long key(int x, int y, int zoom) {
+    // Tile coordinates are less than 2^zoom, which fits 29 bits up to zoom 29.
+    return ((long) zoom << 58) | ((long) x << 29) | y;
+  }
+
+  private static int zoomOf(long key) {
+    return (int) (key >>> 58);
+  }
+
+  private static long sizeOf(Tile tile) {
+    return TILE_OVERHEAD_BYTES + (tile.data != null ? tile.data.length : 0);
+  }
+}
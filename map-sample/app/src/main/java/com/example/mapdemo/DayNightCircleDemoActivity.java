@@ -17,7 +17,7 @@
 package com.example.mapdemo;
 
 import android.os.Bundle;
-import android.os.Handler;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import com.example.mapdemo.EdgeToEdgeUtil.EdgeToEdgeMarginConfig;
 import com.example.mapdemo.OnMapAndViewReadyListener.OnGlobalLayoutAndMapReadyListener;
@@ -36,17 +36,16 @@ import com.google.common.collect.ImmutableList;
 public class DayNightCircleDemoActivity extends AppCompatActivity
     implements OnGlobalLayoutAndMapReadyListener {
 
-  private static final long ANIMATION_DELAY_MS = (long) Math.floor(1000.0 / 30.0); // 30fps.
   // Longitude is arbitrary, but the latitude positions the circle in such a way that the poles
   // are covered and tests the day night terminator bug.
   private static final LatLng CIRCLE_CENTER = new LatLng(16.399514102698678, 0.0);
   // This circle radius is calculated so that half the map is covered by the circle and therefore
   // create a day night terminator.
   private static final double CIRCLE_RADIUS = 6371 * 1000 * Math.PI * 2 / 4;
-  // Set delta such that at 30fps, it'll take 60 seconds to rotate 180 degrees.
-  private static final float LONGITUDE_TRANSLATION_DELTA = 180f / (30 * 60);
+  // Set speed such that it'll take 60 seconds to rotate 180 degrees.
+  private static final double LONGITUDE_DEGREES_PER_SECOND = 180.0 / 60;
   private static final int PARTIALLY_TRANSPARENT_BLACK = 0xB000_0000;
-  private boolean destroyed = false;
+  @Nullable private AnimationScheduler.Animation animation;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -72,7 +71,9 @@ public class DayNightCircleDemoActivity extends AppCompatActivity
   @Override
   protected void onDestroy() {
     super.onDestroy();
-    destroyed = true;
+    if (animation != null) {
+      animation.cancel();
+    }
   }
 
   @Override
@@ -84,22 +85,29 @@ public class DayNightCircleDemoActivity extends AppCompatActivity
                 .fillColor(PARTIALLY_TRANSPARENT_BLACK)
                 .radius(CIRCLE_RADIUS));
 
-    Runnable animationRunner =
-        new Runnable() {
-          private final Handler uiHandler = new Handler();
+    animation =
+        AnimationScheduler.getInstance()
+            .post(
+                new AnimationScheduler.FrameCallback() {
+                  private long lastFrameTimeNanos = -1;
 
-          @Override
-          public void run() {
-            // Continue animation indefinitely.
-            LatLng center = circle.getCenter();
-            circle.setCenter(
-                new LatLng(center.latitude, center.longitude + LONGITUDE_TRANSLATION_DELTA));
-            if (!destroyed) {
-              uiHandler.postDelayed(this, ANIMATION_DELAY_MS);
-            }
-          }
-        };
-    animationRunner.run();
+                  @Override
+                  public boolean onFrame(long frameTimeNanos) {
+                    // Move by the time since the last frame, so the speed doesn't depend on the
+                    // frame rate.
+                    if (lastFrameTimeNanos >= 0) {
+                      double elapsedSeconds = (frameTimeNanos - lastFrameTimeNanos) / 1e9;
+                      LatLng center = circle.getCenter();
+                      circle.setCenter(
+                          new LatLng(
+                              center.latitude,
+                              center.longitude + LONGITUDE_DEGREES_PER_SECOND * elapsedSeconds));
+                    }
+                    lastFrameTimeNanos = frameTimeNanos;
+                    // Continue animation indefinitely.
+                    return true;
+                  }
+                });
   }
 
   private void setMarginForEdgeToEdgeSupport() {
@@ -18,11 +18,15 @@ package com.example.mapdemo;
 
 import android.view.View;
 import android.view.ViewGroup.MarginLayoutParams;
+import androidx.annotation.Nullable;
 import androidx.core.graphics.Insets;
+import androidx.core.view.OnApplyWindowInsetsListener;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /** Utility to support Edge-To-Edge mode for devices running Android V+. */
@@ -64,8 +68,9 @@ public final class EdgeToEdgeUtil {
   /**
    * Applies margins for the provided configs.
    *
-   * <p>A callback is provided to the window inset listener to adjust margins, ensuring that views
-   * are not obscured by the system bars.
+   * <p>The configs are registered with the {@link InsetCoordinator} of the window their views
+   * belong to. The coordinator is the only window inset listener, so the insets are computed once
+   * per inset dispatch and then fanned out to every registered view.
    *
    * <p>Note: The callbacks are only invoked when the edge-to-edge is enabled and because we are not
    * manually enabling it, they'll be invoked for Android V+ devices.
@@ -74,29 +79,90 @@ public final class EdgeToEdgeUtil {
    */
   private static void applyMargins(List<EdgeToEdgeMarginConfig> edgeToEdgeMarginConfigs) {
     for (EdgeToEdgeMarginConfig edgeToEdgeMarginConfig : edgeToEdgeMarginConfigs) {
-      ViewCompat.setOnApplyWindowInsetsListener(
-          edgeToEdgeMarginConfig.view(),
-          (v, windowInsets) -> {
-            Insets insets = windowInsets.getInsets(WindowInsetsCompat.Type.systemBars());
-            // Apply the insets as a margin to the view.
-            MarginLayoutParams mlp = (MarginLayoutParams) v.getLayoutParams();
-            if (edgeToEdgeMarginConfig.shouldSetLeftMargin()) {
-              mlp.leftMargin = insets.left;
-            }
-            if (edgeToEdgeMarginConfig.shouldSetRightMargin()) {
-              mlp.rightMargin = insets.right;
-            }
-            if (edgeToEdgeMarginConfig.shouldSetTopMargin()) {
-              mlp.topMargin = insets.top;
-            }
-            if (edgeToEdgeMarginConfig.shouldSetBottomMargin()) {
-              mlp.bottomMargin = insets.bottom;
-            }
-            v.setLayoutParams(mlp);
-
-            // Return the window insets to keep passing down to descendant views.
-            return windowInsets;
-          });
+      InsetCoordinator.forView(edgeToEdgeMarginConfig.view()).register(edgeToEdgeMarginConfig);
+    }
+  }
+
+  /**
+   * Applies {@code insets} as margins to the view of {@code edgeToEdgeMarginConfig}, ensuring that
+   * it is not obscured by the system bars. The layout params are left untouched if the margins are
+   * unchanged, so that no layout pass is requested.
+   */
+  private static void applyMargins(EdgeToEdgeMarginConfig edgeToEdgeMarginConfig, Insets insets) {
+    View view = edgeToEdgeMarginConfig.view();
+    MarginLayoutParams mlp = (MarginLayoutParams) view.getLayoutParams();
+    int left = edgeToEdgeMarginConfig.shouldSetLeftMargin() ? insets.left : mlp.leftMargin;
+    int right = edgeToEdgeMarginConfig.shouldSetRightMargin() ? insets.right : mlp.rightMargin;
+    int top = edgeToEdgeMarginConfig.shouldSetTopMargin() ? insets.top : mlp.topMargin;
+    int bottom = edgeToEdgeMarginConfig.shouldSetBottomMargin() ? insets.bottom : mlp.bottomMargin;
+    if (left == mlp.leftMargin
+        && right == mlp.rightMargin
+        && top == mlp.topMargin
+        && bottom == mlp.bottomMargin) {
+      return;
+    }
+    mlp.setMargins(left, top, right, bottom);
+    view.setLayoutParams(mlp);
+  }
+
+  /**
+   * Listens to the window insets of a window's content view, and applies them to every view
+   * registered with it.
+   *
+   * <p>Only the system bar insets are used, so inset dispatches that only change other insets (for
+   * example, the IME being shown) don't touch any registered view.
+   */
+  private static final class InsetCoordinator implements OnApplyWindowInsetsListener {
+    private final List<EdgeToEdgeMarginConfig> edgeToEdgeMarginConfigs = new ArrayList<>();
+    @Nullable private Insets lastInsets;
+
+    /**
+     * Returns the coordinator of the window {@code view} belongs to, which is hosted by the
+     * window's content view. A view that isn't part of a window's hierarchy hosts its own
+     * coordinator.
+     */
+    static InsetCoordinator forView(View view) {
+      View host = view.getRootView().findViewById(android.R.id.content);
+      if (host == null) {
+        host = view;
+      }
+      InsetCoordinator coordinator =
+          (InsetCoordinator) host.getTag(R.id.edge_to_edge_inset_coordinator);
+      if (coordinator == null) {
+        coordinator = new InsetCoordinator();
+        host.setTag(R.id.edge_to_edge_inset_coordinator, coordinator);
+        ViewCompat.setOnApplyWindowInsetsListener(host, coordinator);
+        ViewCompat.requestApplyInsets(host);
+      }
+      return coordinator;
+    }
+
+    void register(EdgeToEdgeMarginConfig edgeToEdgeMarginConfig) {
+      Iterator<EdgeToEdgeMarginConfig> iterator = edgeToEdgeMarginConfigs.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().view() == edgeToEdgeMarginConfig.view()) {
+          iterator.remove();
+        }
+      }
+      edgeToEdgeMarginConfigs.add(edgeToEdgeMarginConfig);
+      // Views registered after the last dispatch get the current insets right away.
+      if (lastInsets != null) {
+        applyMargins(edgeToEdgeMarginConfig, lastInsets);
+      }
+    }
+
+    @Override
+    public WindowInsetsCompat onApplyWindowInsets(View v, WindowInsetsCompat windowInsets) {
+      Insets insets = windowInsets.getInsets(WindowInsetsCompat.Type.systemBars());
+      if (!insets.equals(lastInsets)) {
+        lastInsets = insets;
+        for (EdgeToEdgeMarginConfig edgeToEdgeMarginConfig : edgeToEdgeMarginConfigs) {
+          applyMargins(edgeToEdgeMarginConfig, insets);
+        }
+      }
+      // Let the content view handle the insets as usual, and keep passing them down to descendant
+      // views.
+      return ViewCompat.onApplyWindowInsets(v, windowInsets);
     }
   }
 
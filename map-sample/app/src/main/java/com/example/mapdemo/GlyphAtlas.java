@@ -0,0 +1,151 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The glyphs needed to label debug tiles, such as "(12, 34)" and "zoom = 5", rendered once into a
+ * bitmap, so labels can be drawn by copying glyphs instead of shaping and rasterizing text for
+ * every tile.
+ *
+ * <p>Glyphs are placed using their advance widths without kerning, which is indistinguishable for
+ * digits and punctuation. An atlas is never modified once created, so several tile threads can draw
+ * from it at once.
+ */
+public final class GlyphAtlas {
+
+  /** The characters in the atlas. Other characters are skipped when drawing. */
+  private static final String GLYPHS = "0123456789(),= -zom";
+
+  /** Space around each glyph, so antialiased edges that overhang the advance aren't clipped. */
+  private static final int PADDING = 2;
+
+  private static final ConcurrentHashMap<Float, GlyphAtlas> ATLASES = new ConcurrentHashMap<>();
+
+  private final Bitmap atlas;
+  private final Rect[] glyphRects = new Rect[128];
+  private final float[] advances = new float[128];
+  private final float ascent;
+
+  /** Returns the atlas for text of the given size in pixels, rendering it the first time. */
+  public static GlyphAtlas forTextSize(float textSize) {
+    return ATLASES.computeIfAbsent(textSize, GlyphAtlas::new);
+  }
+
+  private GlyphAtlas(float textSize) {
+    Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    paint.setTextSize(textSize);
+    Paint.FontMetrics metrics = paint.getFontMetrics();
+    ascent = metrics.ascent;
+    int cellHeight = (int) Math.ceil(metrics.descent - metrics.ascent) + 2 * PADDING;
+
+    float[] glyphAdvances = new float[GLYPHS.length()];
+    paint.getTextWidths(GLYPHS, glyphAdvances);
+    int atlasWidth = 0;
+    for (float advance : glyphAdvances) {
+      atlasWidth += (int) Math.ceil(advance) + 2 * PADDING;
+    }
+
+    atlas = Bitmap.createBitmap(atlasWidth, cellHeight, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(atlas);
+    int cellLeft = 0;
+    for (int i = 0; i < GLYPHS.length(); i++) {
+      char glyph = GLYPHS.charAt(i);
+      int cellWidth = (int) Math.ceil(glyphAdvances[i]) + 2 * PADDING;
+      canvas.drawText(GLYPHS, i, i + 1, cellLeft + PADDING, PADDING - ascent, paint);
+      glyphRects[glyph] = new Rect(cellLeft, 0, cellLeft + cellWidth, cellHeight);
+      advances[glyph] = glyphAdvances[i];
+      cellLeft += cellWidth;
+    }
+  }
+
+  /** Returns the width of the first {@code length} characters of {@code text}. */
+  public float measure(char[] text, int length) {
+    float width = 0;
+    for (int i = 0; i < length; i++) {
+      char c = text[i];
+      width += c < advances.length ? advances[c] : 0;
+    }
+    return width;
+  }
+
+  /**
+   * Draws the first {@code length} characters of {@code text} horizontally centered on {@code
+   * centerX}, with their baseline at {@code baselineY}.
+   *
+   * @param paint the paint to draw the glyphs with, or null
+   * @param scratch a rectangle this method may overwrite, so drawing allocates nothing
+   */
+  public void drawCentered(
+      Canvas canvas,
+      char[] text,
+      int length,
+      float centerX,
+      float baselineY,
+      Paint paint,
+      RectF scratch) {
+    float left = centerX - measure(text, length) / 2;
+    float top = baselineY + ascent - PADDING;
+    for (int i = 0; i < length; i++) {
+      char c = text[i];
+      Rect glyphRect = c < glyphRects.length ? glyphRects[c] : null;
+      if (glyphRect == null) {
+        continue;
+      }
+      scratch.set(
+          left - PADDING, top, left - PADDING + glyphRect.width(), top + glyphRect.height());
+      canvas.drawBitmap(atlas, glyphRect, scratch, paint);
+      left += advances[c];
+    }
+  }
+
+  /**
+   * Writes {@code value} in decimal into {@code buffer} at {@code offset}, and returns the offset
+   * after the last digit. Unlike {@link Integer#toString}, this allocates nothing.
+   */
+  public static int appendInt(char[] buffer, int offset, int value) {
+    // The digits are taken from the value made negative, since negating Integer.MIN_VALUE
+    // overflows while every positive int can be negated.
+    int negativeValue = value;
+    if (value < 0) {
+      buffer[offset++] = '-';
+    } else {
+      negativeValue = -value;
+    }
+    int digitCount = 1;
+    for (int remaining = negativeValue / 10; remaining < 0; remaining /= 10) {
+      digitCount++;
+    }
+    for (int i = offset + digitCount - 1; i >= offset; i--) {
+      buffer[i] = (char) ('0' - negativeValue % 10);
+      negativeValue /= 10;
+    }
+    return offset + digitCount;
+  }
+
+  /** Copies {@code text} into {@code buffer} at {@code offset}, and returns the offset after it. */
+  public static int appendString(char[] buffer, int offset, String text) {
+    text.getChars(0, text.length(), buffer, offset);
+    return offset + text.length();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import com.google.android.gms.maps.model.LatLng;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The points of a shape, with latitudes and longitudes stored in primitive arrays, so the shape
+ * can be translated, rotated and scaled on every animation frame without allocating.
+ *
+ * <p>Transforms treat latitude and longitude as planar coordinates in degrees, which is fine for
+ * the small shapes of the demos. Points are converted to {@link LatLng}s only when handed to the
+ * map, with {@link #toLatLngList()}.
+ *
+ * <p>Buffers are not thread-safe.
+ */
+public final class LatLngBuffer {
+
+  private final double[] lats;
+  private final double[] lngs;
+  private final int size;
+
+  public LatLngBuffer(List<LatLng> points) {
+    size = points.size();
+    lats = new double[size];
+    lngs = new double[size];
+    for (int i = 0; i < size; i++) {
+      LatLng point = points.get(i);
+      lats[i] = point.latitude;
+      lngs[i] = point.longitude;
+    }
+  }
+
+  /** Creates a buffer for each of {@code pointLists}, such as the holes of a polygon. */
+  public static List<LatLngBuffer> fromNestedList(List<List<LatLng>> pointLists) {
+    List<LatLngBuffer> buffers = new ArrayList<>(pointLists.size());
+    for (List<LatLng> points : pointLists) {
+      buffers.add(new LatLngBuffer(points));
+    }
+    return buffers;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double getLatitude(int index) {
+    return lats[index];
+  }
+
+  public double getLongitude(int index) {
+    return lngs[index];
+  }
+
+  /**
+   * Moves every point by the given distances, in degrees.
+   *
+   * @return this buffer
+   */
+  public LatLngBuffer translate(double latDistance, double lngDistance) {
+    for (int i = 0; i < size; i++) {
+      lats[i] += latDistance;
+      lngs[i] += lngDistance;
+    }
+    return this;
+  }
+
+  /**
+   * Rotates every point counterclockwise by {@code degrees} around the given center.
+   *
+   * @return this buffer
+   */
+  public LatLngBuffer rotate(double degrees, double centerLat, double centerLng) {
+    double cos = Math.cos(Math.toRadians(degrees));
+    double sin = Math.sin(Math.toRadians(degrees));
+    for (int i = 0; i < size; i++) {
+      double dLat = lats[i] - centerLat;
+      double dLng = lngs[i] - centerLng;
+      lats[i] = centerLat + dLng * sin + dLat * cos;
+      lngs[i] = centerLng + dLng * cos - dLat * sin;
+    }
+    return this;
+  }
+
+  /**
+   * Scales the distance of every point from the given center by {@code factor}.
+   *
+   * @return this buffer
+   */
+  public LatLngBuffer scale(double factor, double centerLat, double centerLng) {
+    for (int i = 0; i < size; i++) {
+      lats[i] = centerLat + (lats[i] - centerLat) * factor;
+      lngs[i] = centerLng + (lngs[i] - centerLng) * factor;
+    }
+    return this;
+  }
+
+  /** Returns the points as a new list, for passing to the map. */
+  public List<LatLng> toLatLngList() {
+    List<LatLng> points = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      points.add(new LatLng(lats[i], lngs[i]));
+    }
+    return points;
+  }
+
+  /** Returns the points of each of {@code buffers} as new lists, for passing to the map. */
+  public static List<List<LatLng>> toNestedLatLngList(List<LatLngBuffer> buffers) {
+    List<List<LatLng>> pointLists = new ArrayList<>(buffers.size());
+    for (LatLngBuffer buffer : buffers) {
+      pointLists.add(buffer.toLatLngList());
+    }
+    return pointLists;
+  }
+}
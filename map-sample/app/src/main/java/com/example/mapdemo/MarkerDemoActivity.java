@@ -19,8 +19,6 @@ package com.example.mapdemo;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.SystemClock;
 import android.text.SpannableString;
 import android.text.style.ForegroundColorSpan;
 import android.util.Log;
@@ -205,6 +203,9 @@ public class MarkerDemoActivity extends AppCompatActivity
 
   private final Random random = new Random();
 
+  /** The bounce of the marker at Perth, or null if it hasn't been clicked. */
+  @Nullable private AnimationScheduler.Animation perthBounce;
+
   @Override
   protected void onCreate(@Nullable Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
@@ -489,26 +490,23 @@ public class MarkerDemoActivity extends AppCompatActivity
   public boolean onMarkerClick(final Marker marker) {
     if (perth != null && marker.equals(perth)) {
       // This causes the marker at Perth to bounce into position when it is clicked.
-      final Handler handler = new Handler();
-      final long start = SystemClock.uptimeMillis();
       final long duration = 1500;
 
       final Interpolator interpolator = new BounceInterpolator();
 
-      handler.post(
-          new Runnable() {
-            @Override
-            public void run() {
-              long elapsed = SystemClock.uptimeMillis() - start;
-              float t = Math.max(1 - interpolator.getInterpolation((float) elapsed / duration), 0);
-              marker.setAnchor(0.5f, 1.0f + 2 * t);
-
-              if (t > 0.0) {
-                // Post again 16ms later.
-                handler.postDelayed(this, 16);
-              }
-            }
-          });
+      // Restart the bounce if the marker is clicked again while bouncing.
+      if (perthBounce != null) {
+        perthBounce.cancel();
+      }
+      perthBounce =
+          AnimationScheduler.getInstance()
+              .animate(
+                  duration,
+                  interpolator,
+                  value -> {
+                    float t = Math.max(1 - value, 0);
+                    marker.setAnchor(0.5f, 1.0f + 2 * t);
+                  });
     } else if (adelaide != null && marker.equals(adelaide)) {
       // This causes the marker at Adelaide to change color and alpha.
       marker.setIcon(BitmapDescriptorFactory.defaultMarker(random.nextFloat() * 360));
@@ -16,30 +16,122 @@
 
 package com.example.mapdemo;
 
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.google.android.gms.maps.model.TileProvider;
 import com.google.android.gms.maps.model.UrlTileProvider;
-import java.net.MalformedURLException;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
-import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** Provider of "moon" raster tiles. */
 public class MoonTileProvider extends UrlTileProvider {
 
-  private static final String MOON_MAP_URL_FORMAT =
-      "http://mw1.google.com/mw-planetary/lunar/lunarmaps_v1/clem_bw/%d/%d/%d.jpg";
+  private static final String TAG = MoonTileProvider.class.getSimpleName();
+  private static final int TILE_SIZE = 256;
+
+  /** The offline archive of moon tiles, in the app's files directory. */
+  private static final String OFFLINE_ARCHIVE_NAME = "moon_tiles.tpk";
+
+  /**
+   * A directory of moon tiles laid out like the tile server, {@code zoom/x/y.jpg}, in the app's
+   * external files directory. It can be copied there with {@code adb push}.
+   */
+  private static final String OFFLINE_TILES_DIR_NAME = "moon_tiles";
+
+  private static final long CACHE_BYTES = 8 * 1024 * 1024;
+  private static final long DISK_CACHE_BYTES = 32 * 1024 * 1024;
+
+  /** The disk cache of downloaded moon tiles, in the app's cache directory. */
+  private static final String DISK_CACHE_DIR_NAME = "moon_tile_cache";
+
+  // The moon tile coordinate system is reversed. This is not normal.
+  private static final TileUrlTemplate MOON_MAP_URL_TEMPLATE =
+      new TileUrlTemplate(
+          "http://mw1.google.com/mw-planetary/lunar/lunarmaps_v1/clem_bw/{z}/{x}/{-y}.jpg");
 
   public MoonTileProvider() {
-    super(256 /* width */, 256 /* height */);
+    super(TILE_SIZE /* width */, TILE_SIZE /* height */);
+  }
+
+  /** Set while an import is running, so that only one thread writes the archive at a time. */
+  private static final AtomicBoolean importInProgress = new AtomicBoolean();
+
+  /**
+   * Returns a provider that reads the moon tiles from the offline archive if it exists, and
+   * downloads them otherwise. Tiles missing from the archive are downloaded as well, so the archive
+   * may hold just the areas and zoom levels that are needed offline.
+   *
+   * <p>If there is no archive yet, but a directory of moon tiles has been copied to the device, the
+   * archive is created from it in the background, and is used from the next call on.
+   */
+  public static TileProvider createOfflineFirst(Context context) {
+    TileProvider offlineTiles = openOfflineArchive(context);
+    return offlineTiles != null ? offlineTiles : new MoonTileProvider();
+  }
+
+  /**
+   * Returns the tiles of {@link #createOfflineFirst} behind a {@link CachingTileProvider}, so they
+   * can be prefetched with a {@link TilePrefetcher}. Downloaded tiles are also cached on disk,
+   * while tiles from the offline archive are only cached in memory, since the archive already
+   * stores them on the device.
+   */
+  public static CachingTileProvider createCached(Context context) {
+    TileProvider offlineTiles = openOfflineArchive(context);
+    if (offlineTiles != null) {
+      return new CachingTileProvider(offlineTiles, CACHE_BYTES);
+    }
+    return new CachingTileProvider(
+        new MoonTileProvider(),
+        CACHE_BYTES,
+        new File(context.getCacheDir(), DISK_CACHE_DIR_NAME),
+        DISK_CACHE_BYTES);
+  }
+
+  /**
+   * Returns a provider reading the offline archive, falling back to downloading the tiles it lacks,
+   * or null if there is no usable archive, in which case an import is started if possible.
+   */
+  @Nullable
+  private static TileProvider openOfflineArchive(Context context) {
+    File archiveFile = new File(context.getFilesDir(), OFFLINE_ARCHIVE_NAME);
+    if (archiveFile.isFile()) {
+      try {
+        return new OfflineTileProvider(archiveFile, new MoonTileProvider());
+      } catch (IOException e) {
+        Log.w(TAG, "Could not open the offline moon tiles, downloading them instead", e);
+      }
+    }
+    File externalFilesDir = context.getExternalFilesDir(/* type= */ null);
+    File tilesDir =
+        externalFilesDir != null ? new File(externalFilesDir, OFFLINE_TILES_DIR_NAME) : null;
+    // Every moon tile demo calls this, possibly before an earlier import has finished, and
+    // concurrent imports would write the same temporary file.
+    if (tilesDir != null && tilesDir.isDirectory() && importInProgress.compareAndSet(false, true)) {
+      new Thread(
+              () -> {
+                try {
+                  // The tile server numbers rows from the bottom, see MOON_MAP_URL_TEMPLATE.
+                  int tileCount =
+                      OfflineTileProvider.importDirectory(
+                          tilesDir, archiveFile, TILE_SIZE, TILE_SIZE, /* flipY= */ true);
+                  Log.i(TAG, "Imported " + tileCount + " moon tiles into " + archiveFile);
+                } catch (IOException e) {
+                  Log.w(TAG, "Could not import the moon tiles from " + tilesDir, e);
+                } finally {
+                  importInProgress.set(false);
+                }
+              },
+              "MoonTileImport")
+          .start();
+    }
+    return null;
   }
 
   @Override
   public URL getTileUrl(int x, int y, int zoom) {
-    // The moon tile coordinate system is reversed. This is not normal.
-    int reversedY = (1 << zoom) - y - 1;
-    String s = String.format(Locale.US, MOON_MAP_URL_FORMAT, zoom, x, reversedY);
-    try {
-      return new URL(s);
-    } catch (MalformedURLException e) {
-      throw new RuntimeException(e);
-    }
+    return MOON_MAP_URL_TEMPLATE.getTileUrl(x, y, zoom);
   }
 }
@@ -16,11 +16,7 @@
 
 package com.example.mapdemo;
 
-import com.google.android.gms.maps.model.LatLng;
-import java.util.ArrayList;
-import java.util.List;
-
-/** Helper to translate all given LatLngs by the same amount in one of the predefined directions. */
+/** Helper to translate all given points by the same amount in one of the predefined directions. */
 public enum MoveDirection {
   UP(1, 0),
   DOWN(-1, 0),
@@ -43,27 +39,8 @@ public enum MoveDirection {
     return numLngSteps * stepSizeDeg;
   }
 
-  private static LatLng movePoint(LatLng oldPoint, double latMoveDistance, double lngMoveDistance) {
-    return new LatLng(oldPoint.latitude + latMoveDistance, oldPoint.longitude + lngMoveDistance);
-  }
-
-  public static List<LatLng> movePointsInList(
-      List<LatLng> oldPoints, double latMoveDistance, double lngMoveDistance) {
-    List<LatLng> newPoints = new ArrayList<>(oldPoints.size());
-    for (LatLng oldPoint : oldPoints) {
-      newPoints.add(movePoint(oldPoint, latMoveDistance, lngMoveDistance));
-    }
-
-    return newPoints;
-  }
-
-  public static List<List<LatLng>> movePointsInNestedList(
-      List<List<LatLng>> oldPointLists, double latMoveDistance, double lngMoveDistance) {
-    List<List<LatLng>> newPointLists = new ArrayList<>(oldPointLists.size());
-    for (List<LatLng> oldPointList : oldPointLists) {
-      newPointLists.add(movePointsInList(oldPointList, latMoveDistance, lngMoveDistance));
-    }
-
-    return newPointLists;
+  /** Moves all of {@code points} by one step of {@code stepSizeDeg} degrees in this direction. */
+  public void movePoints(LatLngBuffer points, double stepSizeDeg) {
+    points.translate(getLatDistance(stepSizeDeg), getLngDistance(stepSizeDeg));
   }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import androidx.annotation.Nullable;
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TileProvider} that reads tiles from a single archive file on the device, so a tile
+ * overlay works without a network connection.
+ *
+ * <p>The archive is memory-mapped. It starts with a header and an open-addressing hash table from
+ * tile coordinates to the offset and length of the tile's encoded image, followed by the images.
+ * Looking up a tile therefore takes a constant number of reads from the mapped file, and copying
+ * its bytes. Tiles missing from the archive are requested from a fallback provider, if there is
+ * one, and reported as {@link #NO_TILE} otherwise.
+ *
+ * <p>Archives are created from a directory tree of {@code zoom/x/y.<extension>} image files with
+ * {@link #importDirectory}.
+ */
+public class OfflineTileProvider implements TileProvider {
+
+  private static final int MAGIC = 0x54504B31; // "TPK1"
+  private static final int HEADER_BYTES = 16;
+  private static final int ENTRY_BYTES = 20; // Key, offset, length.
+  private static final long EMPTY_KEY = -1;
+
+  private final MappedByteBuffer archive;
+  private final int tileWidth;
+  private final int tileHeight;
+  private final int tableMask;
+  @Nullable private final TileProvider fallback;
+
+  /** Maps {@code archiveFile}, which must have been created with {@link #importDirectory}. */
+  public OfflineTileProvider(File archiveFile) throws IOException {
+    this(archiveFile, /* fallback= */ null);
+  }
+
+  /**
+   * Maps {@code archiveFile}, which must have been created with {@link #importDirectory}, and
+   * requests the tiles that are missing from it from {@code fallback}.
+   */
+  public OfflineTileProvider(File archiveFile, @Nullable TileProvider fallback) throws IOException {
+    this.fallback = fallback;
+    try (FileChannel channel = new FileInputStream(archiveFile).getChannel()) {
+      archive = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (archive.getInt(0) != MAGIC) {
+      throw new IOException("Not a tile archive: " + archiveFile);
+    }
+    tileWidth = archive.getInt(4);
+    tileHeight = archive.getInt(8);
+    tableMask = archive.getInt(12) - 1;
+  }
+
+  @Override
+  public Tile getTile(int x, int y, int zoom) {
+    long key = key(x, y, zoom);
+    // Linear probing from the key's slot. The table is at most half full, so this ends quickly.
+    for (int slot = hash(key) & tableMask; ; slot = (slot + 1) & tableMask) {
+      int entryOffset = HEADER_BYTES + slot * ENTRY_BYTES;
+      long entryKey = archive.getLong(entryOffset);
+      if (entryKey == EMPTY_KEY) {
+        return fallback != null ? fallback.getTile(x, y, zoom) : NO_TILE;
+      }
+      if (entryKey == key) {
+        int dataOffset = (int) archive.getLong(entryOffset + 8);
+        byte[] data = new byte[archive.getInt(entryOffset + 16)];
+        // Read through a duplicate, since tile threads can't share the archive's position.
+        ByteBuffer view = archive.duplicate();
+        view.position(dataOffset);
+        view.get(data);
+        return new Tile(tileWidth, tileHeight, data);
+      }
+    }
+  }
+
+  /**
+   * Packs the tile images in {@code directory}, laid out as {@code zoom/x/y.<extension>}, into a
+   * new archive at {@code archiveFile}, replacing any previous archive. This reads every image, so
+   * call it on a background thread.
+   *
+   * @param flipY whether the tree numbers rows from the bottom (TMS), rather than from the top like
+   *     the map does
+   * @return the number of tiles in the archive
+   */
+  public static int importDirectory(
+      File directory, File archiveFile, int tileWidth, int tileHeight, boolean flipY)
+      throws IOException {
+    List<long[]> tiles = new ArrayList<>(); // Key and index into tileFiles.
+    List<File> tileFiles = new ArrayList<>();
+    File[] zoomDirs = directory.listFiles(File::isDirectory);
+    if (zoomDirs == null) {
+      throw new IOException("Not a directory: " + directory);
+    }
+    for (File zoomDir : zoomDirs) {
+      int zoom = parseCoordinate(zoomDir.getName());
+      File[] xDirs = zoomDir.listFiles(File::isDirectory);
+      if (zoom < 0 || xDirs == null) {
+        continue;
+      }
+      for (File xDir : xDirs) {
+        int x = parseCoordinate(xDir.getName());
+        File[] yFiles = xDir.listFiles(File::isFile);
+        if (x < 0 || yFiles == null) {
+          continue;
+        }
+        for (File yFile : yFiles) {
+          int y = parseCoordinate(yFile.getName());
+          if (y < 0) {
+            continue;
+          }
+          if (flipY) {
+            y = (1 << zoom) - y - 1;
+          }
+          tiles.add(new long[] {key(x, y, zoom), tileFiles.size()});
+          tileFiles.add(yFile);
+        }
+      }
+    }
+
+    // Keep the table at most half full, so probes stay short.
+    int tableSize = Integer.highestOneBit(Math.max(1, tiles.size()) * 2) * 2;
+    long dataOffset = HEADER_BYTES + (long) tableSize * ENTRY_BYTES;
+    ByteBuffer table = ByteBuffer.allocate(HEADER_BYTES + tableSize * ENTRY_BYTES);
+    table.putInt(MAGIC).putInt(tileWidth).putInt(tileHeight).putInt(tableSize);
+    for (int slot = 0; slot < tableSize; slot++) {
+      table.putLong(HEADER_BYTES + slot * ENTRY_BYTES, EMPTY_KEY);
+    }
+
+    File temporaryFile = new File(archiveFile.getPath() + ".tmp");
+    try {
+      try (RandomAccessFile output = new RandomAccessFile(temporaryFile, "rw")) {
+        output.setLength(0);
+        output.seek(dataOffset);
+        for (long[] tile : tiles) {
+          byte[] data = readFile(tileFiles.get((int) tile[1]));
+          int slot = hash(tile[0]) & (tableSize - 1);
+          while (table.getLong(HEADER_BYTES + slot * ENTRY_BYTES) != EMPTY_KEY) {
+            slot = (slot + 1) & (tableSize - 1);
+          }
+          int entryOffset = HEADER_BYTES + slot * ENTRY_BYTES;
+          table.putLong(entryOffset, tile[0]);
+          table.putLong(entryOffset + 8, output.getFilePointer());
+          table.putInt(entryOffset + 16, data.length);
+          output.write(data);
+        }
+        output.seek(0);
+        output.write(table.array());
+      }
+      if (!temporaryFile.renameTo(archiveFile)) {
+        throw new IOException("Could not create " + archiveFile);
+      }
+    } finally {
+      // Only left behind if the import failed part of the way through.
+      temporaryFile.delete();
+    }
+    return tiles.size();
+  }
+
+  private static long key(int x, int y, int zoom) {
+    // Tile coordinates are less than 2^zoom, which fits 29 bits up to zoom 29.
+    return ((long) zoom << 58) | ((long) x << 29) | y;
+  }
+
+  private static int hash(long key) {
+    // Mixes the bits of the coordinates, so neighboring tiles spread over the table.
+    long mixed = key * 0x9E3779B97F4A7C15L;
+    return (int) (mixed ^ (mixed >>> 32));
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+      byte[] data = new byte[(int) file.length()];
+      input.readFully(data);
+      return data;
+    }
+  }
+
+  /** Returns the number a tile file or directory is named after, or -1 if it isn't one. */
+  private static int parseCoordinate(String name) {
+    int extensionStart = name.indexOf('.');
+    String number = extensionStart >= 0 ? name.substring(0, extensionStart) : name;
+    try {
+      return Integer.parseInt(number);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
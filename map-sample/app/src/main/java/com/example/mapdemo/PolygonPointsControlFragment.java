@@ -25,7 +25,6 @@ import android.view.ViewGroup;
 import android.view.inputmethod.EditorInfo;
 import android.widget.EditText;
 import android.widget.TextView;
-import com.google.android.gms.maps.model.LatLng;
 import java.util.List;
 
 /** Fragment with "points" UI controls for Polygons, to be used in ViewPager. */
@@ -34,10 +33,8 @@ public class PolygonPointsControlFragment extends PolygonControlFragment
 
   private MoveDirection moveDirection;
   private double stepSizeDeg;
-  private List<LatLng> originalPoints;
-  private List<List<LatLng>> originalHoles;
-  private double latDistance = 0;
-  private double lngDistance = 0;
+  private LatLngBuffer points;
+  private List<LatLngBuffer> holes;
 
   private final AnimationManager animationManager =
       new AnimationManager(
@@ -48,14 +45,14 @@ public class PolygonPointsControlFragment extends PolygonControlFragment
                 return;
               }
               // When the polygon moves offscreen, its coordinates will be clamped and caused the
-              // shape to change. Using the original points and holes for computing new points and
-              // holes to make sure shape can be retained after the polygon moves offscreen.
-              latDistance += moveDirection.getLatDistance(stepSizeDeg);
-              lngDistance += moveDirection.getLngDistance(stepSizeDeg);
-              polygon.setPoints(
-                  MoveDirection.movePointsInList(originalPoints, latDistance, lngDistance));
-              polygon.setHoles(
-                  MoveDirection.movePointsInNestedList(originalHoles, latDistance, lngDistance));
+              // shape to change. Moving our own copy of the points and holes rather than the
+              // polygon's makes sure shape can be retained after the polygon moves offscreen.
+              moveDirection.movePoints(points, stepSizeDeg);
+              for (LatLngBuffer hole : holes) {
+                moveDirection.movePoints(hole, stepSizeDeg);
+              }
+              polygon.setPoints(points.toLatLngList());
+              polygon.setHoles(LatLngBuffer.toNestedLatLngList(holes));
             }
           });
 
@@ -164,9 +161,7 @@ public class PolygonPointsControlFragment extends PolygonControlFragment
 
   @Override
   public void refresh() {
-    latDistance = 0;
-    lngDistance = 0;
-    originalPoints = polygon.getPoints();
-    originalHoles = polygon.getHoles();
+    points = new LatLngBuffer(polygon.getPoints());
+    holes = LatLngBuffer.fromNestedList(polygon.getHoles());
   }
 }
@@ -25,8 +25,6 @@ import android.view.ViewGroup;
 import android.view.inputmethod.EditorInfo;
 import android.widget.EditText;
 import android.widget.TextView;
-import com.google.android.gms.maps.model.LatLng;
-import java.util.List;
 
 /** Fragment with "points" UI controls for Polylines, to be used in ViewPager. */
 public class PolylinePointsControlFragment extends PolylineControlFragment
@@ -34,9 +32,7 @@ public class PolylinePointsControlFragment extends PolylineControlFragment
 
   private MoveDirection moveDirection;
   private double stepSizeDeg;
-  private List<LatLng> originalPoints;
-  private double latDistance = 0;
-  private double lngDistance = 0;
+  private LatLngBuffer points;
 
   private final AnimationManager animationManager =
       new AnimationManager(
@@ -47,12 +43,10 @@ public class PolylinePointsControlFragment extends PolylineControlFragment
                 return;
               }
               // When the polyline moves offscreen, its coordinates will be clamped and caused the
-              // shape to change. Using the original points for computing new points to make sure
-              // the shape can be retained after the polyline moves offscreen.
-              latDistance += moveDirection.getLatDistance(stepSizeDeg);
-              lngDistance += moveDirection.getLngDistance(stepSizeDeg);
-              polyline.setPoints(
-                  MoveDirection.movePointsInList(originalPoints, latDistance, lngDistance));
+              // shape to change. Moving our own copy of the points rather than the polyline's
+              // makes sure the shape can be retained after the polyline moves offscreen.
+              moveDirection.movePoints(points, stepSizeDeg);
+              polyline.setPoints(points.toLatLngList());
             }
           });
 
@@ -161,8 +155,6 @@ public class PolylinePointsControlFragment extends PolylineControlFragment
 
   @Override
   public void refresh() {
-    latDistance = 0;
-    lngDistance = 0;
-    originalPoints = polyline.getPoints();
+    points = new LatLngBuffer(polyline.getPoints());
   }
 }
@@ -16,7 +16,9 @@
 
 package com.example.mapdemo;
 
+import android.app.ActivityManager;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.SeekBar;
 import android.widget.SeekBar.OnSeekBarChangeListener;
 import androidx.appcompat.app.AppCompatActivity;
@@ -26,7 +28,6 @@ import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.TileOverlay;
 import com.google.android.gms.maps.model.TileOverlayOptions;
-import com.google.android.gms.maps.model.TileProvider;
 import com.google.android.libraries.navigation.SupportNavigationFragment;
 import com.google.common.collect.ImmutableList;
 
@@ -34,7 +35,9 @@ import com.google.common.collect.ImmutableList;
 public class TileCoordinateDemoActivity extends AppCompatActivity
     implements OnSeekBarChangeListener, OnMapReadyCallback {
 
+  private static final String TAG = TileCoordinateDemoActivity.class.getSimpleName();
   private static final int TRANSPARENCY_MAX = 100;
+  private static final long TILE_CACHE_BYTES = 4 * 1024 * 1024;
 
   private TileOverlay tileOverlay;
   private SeekBar transparencyBar;
@@ -79,9 +82,31 @@ public class TileCoordinateDemoActivity extends AppCompatActivity
 
   @Override
   public void onMapReady(GoogleMap map) {
-    TileProvider coordTileProvider =
+    // Low-end devices get smaller, lossy tiles, at the cost of more CPU time to encode them.
+    ActivityManager activityManager = getSystemService(ActivityManager.class);
+    TileEncoder.Format tileFormat =
+        activityManager != null && activityManager.isLowRamDevice()
+            ? TileEncoder.Format.WEBP_LOSSY
+            : TileEncoder.Format.PNG;
+    TileCoordsTileProvider renderingTileProvider =
         new TileCoordsTileProvider(
-            getApplicationContext().getResources().getDisplayMetrics().density);
+            getApplicationContext().getResources().getDisplayMetrics().density, tileFormat);
+    // Rendered tiles are kept in memory, so panning back to them doesn't render them again.
+    CachingTileProvider coordTileProvider =
+        new CachingTileProvider(renderingTileProvider, TILE_CACHE_BYTES);
+    map.setOnCameraIdleListener(
+        () -> {
+          coordTileProvider.setCurrentZoom(map.getCameraPosition().zoom);
+          TileEncoder encoder = renderingTileProvider.getEncoder();
+          Log.d(
+              TAG,
+              encoder.getFormat()
+                  + " tiles: "
+                  + encoder.getAverageEncodeMicros()
+                  + "us and "
+                  + encoder.getAverageTileBytes()
+                  + " bytes on average");
+        });
     tileOverlay = map.addTileOverlay(new TileOverlayOptions().tileProvider(coordTileProvider));
     transparencyBar.setOnSeekBarChangeListener(this);
   }
@@ -18,65 +18,133 @@ package com.example.mapdemo;
 
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.RectF;
 import com.google.android.gms.maps.model.Tile;
 import com.google.android.gms.maps.model.TileProvider;
 import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provider for custom raster tiles that show borders around tiles, tile coords text "(x, y,
  * zoom=...)" in the middle, and transparency everywhere else.
+ *
+ * <p>The map fetches tiles on several threads at once. Each fetch borrows a {@link RenderState},
+ * which holds the bitmap, canvas, paints and output buffer for one tile at a time, from a lock-free
+ * pool. Tile threads therefore never wait on each other, and once the pool has warmed up, rendering
+ * a tile only allocates the encoded bytes handed to the map. The labels are copied from a {@link
+ * GlyphAtlas} shared by all tiles, rather than shaped and rasterized as text for every tile.
+ *
+ * <p>Tiles are encoded as PNG by default. Pass a {@link TileEncoder.Format} to trade encoding time
+ * for smaller tiles.
  */
 public class TileCoordsTileProvider implements TileProvider {
 
   private static final int TILE_SIZE_DP = 256;
+  private static final int TEXT_SIZE_DP = 18;
+
+  /**
+   * The number of render states kept for reuse, which covers the number of tiles the map fetches
+   * concurrently. Fetches beyond that still succeed, with a state that is dropped afterwards.
+   */
+  private static final int MAX_POOLED_STATES = 8;
 
   private final float scaleFactor;
+  private final int tileSizePx;
+  private final TileEncoder encoder;
+  private final GlyphAtlas glyphAtlas;
 
-  // @GuardedBy("borderTile")
-  private final Bitmap borderTile;
+  private final ConcurrentLinkedQueue<RenderState> renderStatePool = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooledStateCount = new AtomicInteger();
 
   public TileCoordsTileProvider(float displayDensityRatio) {
+    this(displayDensityRatio, TileEncoder.Format.PNG);
+  }
+
+  public TileCoordsTileProvider(float displayDensityRatio, TileEncoder.Format tileFormat) {
     // Scale factor based on density, with a 0.6 multiplier to increase tile generation speed.
     scaleFactor = displayDensityRatio * 0.6f;
-    Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    borderPaint.setStyle(Paint.Style.STROKE);
-    borderTile =
-        Bitmap.createBitmap(
-            (int) (TILE_SIZE_DP * scaleFactor),
-            (int) (TILE_SIZE_DP * scaleFactor),
-            android.graphics.Bitmap.Config.ARGB_8888);
-    Canvas canvas = new Canvas(borderTile);
-    canvas.drawRect(0, 0, TILE_SIZE_DP * scaleFactor, TILE_SIZE_DP * scaleFactor, borderPaint);
+    tileSizePx = (int) (TILE_SIZE_DP * scaleFactor);
+    encoder = new TileEncoder(tileFormat);
+    glyphAtlas = GlyphAtlas.forTextSize(TEXT_SIZE_DP * scaleFactor);
+  }
+
+  /** Returns the encoder of this provider's tiles, which also reports their encoding costs. */
+  public TileEncoder getEncoder() {
+    return encoder;
   }
 
   @Override
   public Tile getTile(int x, int y, int zoom) {
-    Bitmap coordTile = drawTileCoords(x, y, zoom);
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
-    coordTile.compress(Bitmap.CompressFormat.PNG, 0, stream);
-    byte[] bitmapData = stream.toByteArray();
-    return new Tile(
-        (int) (TILE_SIZE_DP * scaleFactor), (int) (TILE_SIZE_DP * scaleFactor), bitmapData);
+    RenderState state = acquireRenderState();
+    try {
+      drawTileCoords(state, x, y, zoom);
+      return new Tile(tileSizePx, tileSizePx, encoder.encode(state.bitmap, state.stream));
+    } finally {
+      releaseRenderState(state);
+    }
   }
 
-  private Bitmap drawTileCoords(int x, int y, int zoom) {
-    // Synchronize copying the bitmap to avoid a race condition in some devices.
-    Bitmap copy;
-    synchronized (borderTile) {
-      copy = borderTile.copy(android.graphics.Bitmap.Config.ARGB_8888, true);
+  private void drawTileCoords(RenderState state, int x, int y, int zoom) {
+    state.bitmap.eraseColor(Color.TRANSPARENT);
+    Canvas canvas = state.canvas;
+    float size = TILE_SIZE_DP * scaleFactor;
+    canvas.drawRect(0, 0, size, size, state.borderPaint);
+    char[] text = state.text;
+    // "(x, y)"
+    int length = GlyphAtlas.appendString(text, 0, "(");
+    length = GlyphAtlas.appendInt(text, length, x);
+    length = GlyphAtlas.appendString(text, length, ", ");
+    length = GlyphAtlas.appendInt(text, length, y);
+    length = GlyphAtlas.appendString(text, length, ")");
+    glyphAtlas.drawCentered(
+        canvas, text, length, size / 2, size / 2, state.glyphPaint, state.glyphRect);
+    // "zoom = z"
+    length = GlyphAtlas.appendString(text, 0, "zoom = ");
+    length = GlyphAtlas.appendInt(text, length, zoom);
+    glyphAtlas.drawCentered(
+        canvas, text, length, size / 2, size * 2 / 3, state.glyphPaint, state.glyphRect);
+  }
+
+  private RenderState acquireRenderState() {
+    RenderState state = renderStatePool.poll();
+    if (state == null) {
+      return new RenderState(tileSizePx);
+    }
+    pooledStateCount.decrementAndGet();
+    return state;
+  }
+
+  private void releaseRenderState(RenderState state) {
+    // The count may briefly exceed the limit by a few states under contention, which is harmless.
+    if (pooledStateCount.incrementAndGet() <= MAX_POOLED_STATES) {
+      renderStatePool.offer(state);
+    } else {
+      pooledStateCount.decrementAndGet();
+      state.bitmap.recycle();
+    }
+  }
+
+  /**
+   * Everything needed to render one tile. Neither {@link Paint} nor {@link Canvas} is thread safe,
+   * so a state is only ever used by one tile thread at a time.
+   */
+  private static final class RenderState {
+    final Bitmap bitmap;
+    final Canvas canvas;
+    final Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    final Paint glyphPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    final RectF glyphRect = new RectF();
+    // Long enough for "(x, y)" with two ten-digit coordinates.
+    final char[] text = new char[32];
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    RenderState(int tileSizePx) {
+      bitmap = Bitmap.createBitmap(tileSizePx, tileSizePx, Bitmap.Config.ARGB_8888);
+      canvas = new Canvas(bitmap);
+      borderPaint.setStyle(Paint.Style.STROKE);
     }
-    Canvas canvas = new Canvas(copy);
-    String tileCoords = "(" + x + ", " + y + ")";
-    String zoomLevel = "zoom = " + zoom;
-    // Paint is not thread safe.
-    Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    mTextPaint.setTextAlign(Paint.Align.CENTER);
-    mTextPaint.setTextSize(18 * scaleFactor);
-    canvas.drawText(
-        tileCoords, TILE_SIZE_DP * scaleFactor / 2, TILE_SIZE_DP * scaleFactor / 2, mTextPaint);
-    canvas.drawText(
-        zoomLevel, TILE_SIZE_DP * scaleFactor / 2, TILE_SIZE_DP * scaleFactor * 2 / 3, mTextPaint);
-    return copy;
   }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encodes rendered tile bitmaps into the bytes handed to the map, in a configurable {@link Format}.
+ *
+ * <p>PNG is the fastest to decode and the largest, lossless WebP is smaller but slower to encode,
+ * and lossy WebP is the smallest, which suits low-end devices where tile memory matters more than
+ * CPU time.
+ *
+ * <p>Encode time and size are logged for every tile when the {@code TileEncoder} tag is loggable at
+ * VERBOSE level (e.g. {@code adb shell setprop log.tag.TileEncoder VERBOSE}), and averages are
+ * available through {@link #getAverageEncodeMicros()} and {@link #getAverageTileBytes()}.
+ *
+ * <p>An encoder can be used by several tile threads at once.
+ */
+public final class TileEncoder {
+
+  /** The formats tiles can be encoded in. */
+  public enum Format {
+    PNG,
+    WEBP_LOSSLESS,
+    WEBP_LOSSY
+  }
+
+  private static final String TAG = TileEncoder.class.getSimpleName();
+  private static final int LOSSLESS_QUALITY = 100;
+  private static final int LOSSY_QUALITY = 80;
+
+  private final Format format;
+  private final Bitmap.CompressFormat compressFormat;
+  private final int quality;
+
+  private final AtomicLong tileCount = new AtomicLong();
+  private final AtomicLong totalEncodeNanos = new AtomicLong();
+  private final AtomicLong totalTileBytes = new AtomicLong();
+
+  public TileEncoder(Format format) {
+    this.format = format;
+    compressFormat = toCompressFormat(format);
+    quality = format == Format.WEBP_LOSSY ? LOSSY_QUALITY : LOSSLESS_QUALITY;
+  }
+
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Encodes {@code bitmap}, using {@code stream} as a scratch buffer, which is reset first.
+   *
+   * @return the encoded bytes
+   */
+  public byte[] encode(Bitmap bitmap, ByteArrayOutputStream stream) {
+    long startNanos = SystemClock.elapsedRealtimeNanos();
+    stream.reset();
+    bitmap.compress(compressFormat, quality, stream);
+    byte[] data = stream.toByteArray();
+    long encodeNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+
+    tileCount.incrementAndGet();
+    totalEncodeNanos.addAndGet(encodeNanos);
+    totalTileBytes.addAndGet(data.length);
+    if (Log.isLoggable(TAG, Log.VERBOSE)) {
+      Log.v(TAG, format + " tile: " + data.length + " bytes, " + encodeNanos / 1000 + "us");
+    }
+    return data;
+  }
+
+  /** Returns the average time spent encoding a tile, in microseconds. */
+  public long getAverageEncodeMicros() {
+    long count = tileCount.get();
+    return count == 0 ? 0 : totalEncodeNanos.get() / count / 1000;
+  }
+
+  /** Returns the average size of an encoded tile, in bytes. */
+  public long getAverageTileBytes() {
+    long count = tileCount.get();
+    return count == 0 ? 0 : totalTileBytes.get() / count;
+  }
+
+  @SuppressWarnings("deprecation") // Bitmap.CompressFormat.WEBP is only used before Android R.
+  private static Bitmap.CompressFormat toCompressFormat(Format format) {
+    switch (format) {
+      case WEBP_LOSSLESS:
+        // Before Android R, WEBP is lossless at quality 100.
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+            ? Bitmap.CompressFormat.WEBP_LOSSLESS
+            : Bitmap.CompressFormat.WEBP;
+      case WEBP_LOSSY:
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+            ? Bitmap.CompressFormat.WEBP_LOSSY
+            : Bitmap.CompressFormat.WEBP;
+      case PNG:
+      default:
+        return Bitmap.CompressFormat.PNG;
+    }
+  }
+}
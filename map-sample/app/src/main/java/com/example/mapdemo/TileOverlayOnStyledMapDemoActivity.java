@@ -36,10 +36,10 @@ import com.google.common.collect.ImmutableList;
 public class TileOverlayOnStyledMapDemoActivity extends AppCompatActivity
     implements OnSeekBarChangeListener, OnMapReadyCallback {
 
-  private static final MoonTileProvider MOON_TILE_PROVIDER = new MoonTileProvider();
   private static final int TRANSPARENCY_MAX = 100;
 
   private TileOverlay moonTiles;
+  private TilePrefetcher tilePrefetcher;
   private SeekBar transparencyBar;
 
   @Override
@@ -65,6 +65,14 @@ public class TileOverlayOnStyledMapDemoActivity extends AppCompatActivity
     }
   }
 
+  @Override
+  protected void onDestroy() {
+    if (tilePrefetcher != null) {
+      tilePrefetcher.shutdown();
+    }
+    super.onDestroy();
+  }
+
   private void performAdditionalSetup() {
     transparencyBar = (SeekBar) findViewById(R.id.transparencySeekBar);
     transparencyBar.setMax(TRANSPARENCY_MAX);
@@ -76,7 +84,12 @@ public class TileOverlayOnStyledMapDemoActivity extends AppCompatActivity
     map.setMapStyle(
         new MapStyleOptions(
             getResources().getString(R.string.multiple_maps_style_midnight_command)));
-    moonTiles = map.addTileOverlay(new TileOverlayOptions().tileProvider(MOON_TILE_PROVIDER));
+    // Moon tiles are cached, and prefetched ahead of the camera, so fast pans don't show blank
+    // squares while tiles are loaded.
+    CachingTileProvider moonTileCache = MoonTileProvider.createCached(this);
+    tilePrefetcher = new TilePrefetcher(map, moonTileCache);
+    tilePrefetcher.attach(/* cameraMoveListener= */ null, /* cameraIdleListener= */ null);
+    moonTiles = map.addTileOverlay(new TileOverlayOptions().tileProvider(moonTileCache));
     transparencyBar.setOnSeekBarChangeListener(this);
   }
 
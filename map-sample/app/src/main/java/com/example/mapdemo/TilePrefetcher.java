@@ -0,0 +1,234 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.GoogleMap.OnCameraIdleListener;
+import com.google.android.gms.maps.GoogleMap.OnCameraMoveListener;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the tiles of a {@link CachingTileProvider} into memory before the map asks for them, so
+ * panning quickly doesn't show blank squares while tiles are loaded.
+ *
+ * <p>While the camera moves, the prefetcher estimates its velocity and predicts where the viewport
+ * will be shortly. It then prefetches the tiles covering the predicted viewport plus a ring of
+ * neighboring tiles, and, while zooming, the tiles of the next zoom level. Prefetches run on a
+ * small worker pool. Each camera move supersedes the prefetches of the previous one: queued ones
+ * are dropped, and running ones skip their tile if it's no longer needed.
+ *
+ * <p>When the camera stops, the cache's hit rate since the previous stop is logged.
+ *
+ * <p>A {@link GoogleMap} holds a single listener of each kind, so the prefetcher takes the place of
+ * the camera move and idle listeners while it is attached. The listeners passed to {@link #attach}
+ * are called after the prefetcher's, and are set on the map again by {@link #shutdown}.
+ */
+public class TilePrefetcher implements OnCameraMoveListener, OnCameraIdleListener {
+
+  private static final String TAG = TilePrefetcher.class.getSimpleName();
+  private static final int WORKER_COUNT = 2;
+
+  /** How far ahead the viewport is predicted. */
+  private static final long LOOKAHEAD_MILLIS = 300;
+
+  /** The most tiles prefetched for a single camera move. */
+  private static final int MAX_PREFETCHED_TILES = 64;
+
+  private final GoogleMap map;
+  private final CachingTileProvider cache;
+  private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+  private final ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0, TimeUnit.MILLISECONDS, queue);
+  private final AtomicInteger generation = new AtomicInteger();
+
+  @Nullable private OnCameraMoveListener cameraMoveListener;
+  @Nullable private OnCameraIdleListener cameraIdleListener;
+
+  // Only used on the main thread, where camera callbacks are delivered.
+  private LatLng lastTarget;
+  private float lastZoom;
+  private long lastMoveMillis;
+
+  public TilePrefetcher(GoogleMap map, CachingTileProvider cache) {
+    this.map = map;
+    this.cache = cache;
+  }
+
+  /**
+   * Makes {@code map} notify this prefetcher of camera moves, in place of any listeners set on it
+   * before. Pass the app's own camera listeners here rather than setting them on the map, which
+   * would detach the prefetcher.
+   *
+   * @param cameraMoveListener called on every camera move after the prefetcher, or null
+   * @param cameraIdleListener called when the camera stops after the prefetcher, or null
+   */
+  public void attach(
+      @Nullable OnCameraMoveListener cameraMoveListener,
+      @Nullable OnCameraIdleListener cameraIdleListener) {
+    this.cameraMoveListener = cameraMoveListener;
+    this.cameraIdleListener = cameraIdleListener;
+    map.setOnCameraMoveListener(this);
+    map.setOnCameraIdleListener(this);
+  }
+
+  /**
+   * Cancels all pending prefetches and stops the workers, and hands the camera events back to the
+   * listeners passed to {@link #attach}.
+   */
+  public void shutdown() {
+    map.setOnCameraMoveListener(cameraMoveListener);
+    map.setOnCameraIdleListener(cameraIdleListener);
+    generation.incrementAndGet();
+    executor.shutdownNow();
+  }
+
+  @Override
+  public void onCameraMove() {
+    LatLng target = map.getCameraPosition().target;
+    float zoom = map.getCameraPosition().zoom;
+    long nowMillis = SystemClock.uptimeMillis();
+    LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+
+    double predictedLatitudeShift = 0;
+    double predictedLongitudeShift = 0;
+    float zoomVelocity = 0;
+    if (lastTarget != null && nowMillis > lastMoveMillis) {
+      double lookahead = (double) LOOKAHEAD_MILLIS / (nowMillis - lastMoveMillis);
+      predictedLatitudeShift = (target.latitude - lastTarget.latitude) * lookahead;
+      predictedLongitudeShift = (target.longitude - lastTarget.longitude) * lookahead;
+      zoomVelocity = zoom - lastZoom;
+    }
+    lastTarget = target;
+    lastZoom = zoom;
+    lastMoveMillis = nowMillis;
+
+    int tileZoom = (int) zoom;
+    int[] range =
+        tileRange(
+            bounds.southwest.latitude + predictedLatitudeShift,
+            bounds.southwest.longitude + predictedLongitudeShift,
+            bounds.northeast.latitude + predictedLatitudeShift,
+            bounds.northeast.longitude + predictedLongitudeShift,
+            tileZoom);
+
+    // Drop the prefetches of the previous move, which were for a viewport that is now stale.
+    int currentGeneration = generation.incrementAndGet();
+    queue.clear();
+    int budget = MAX_PREFETCHED_TILES;
+    // The predicted viewport first, then the ring of neighboring tiles around it, so the tiles the
+    // map is about to need are loaded first and the budget only runs out on the ones it may need.
+    budget = enqueueRing(range, /* margin= */ 0, tileZoom, budget, currentGeneration);
+    budget = enqueueRing(range, /* margin= */ 1, tileZoom, budget, currentGeneration);
+    if (zoomVelocity != 0) {
+      int nextZoom = zoomVelocity > 0 ? tileZoom + 1 : tileZoom - 1;
+      if (nextZoom >= 0) {
+        int[] nextRange =
+            zoomVelocity > 0
+                ? new int[] {range[0] * 2, range[1] * 2, range[2] * 2 + 1, range[3] * 2 + 1}
+                : new int[] {range[0] / 2, range[1] / 2, range[2] / 2, range[3] / 2};
+        enqueueRing(nextRange, /* margin= */ 0, nextZoom, budget, currentGeneration);
+      }
+    }
+    if (cameraMoveListener != null) {
+      cameraMoveListener.onCameraMove();
+    }
+  }
+
+  @Override
+  public void onCameraIdle() {
+    cache.setCurrentZoom(map.getCameraPosition().zoom);
+    lastTarget = null;
+    Log.d(TAG, "Tile cache hit rate: " + Math.round(cache.getHitRate() * 100) + "%");
+    cache.resetHitRate();
+    if (cameraIdleListener != null) {
+      cameraIdleListener.onCameraIdle();
+    }
+  }
+
+  /**
+   * Enqueues the tiles exactly {@code margin} tiles away from {@code range}, which is the range
+   * itself for a margin of 0, row by row, and returns the budget left.
+   */
+  private int enqueueRing(int[] range, int margin, int zoom, int budget, int requestGeneration) {
+    int maxTile = (1 << zoom) - 1;
+    for (int y = Math.max(0, range[1] - margin); y <= Math.min(maxTile, range[3] + margin); y++) {
+      boolean innerRow = y > range[1] - margin && y < range[3] + margin;
+      for (int x = range[0] - margin; x <= range[2] + margin; x++) {
+        if (margin > 0 && innerRow && x > range[0] - margin && x < range[2] + margin) {
+          // Enqueued with a smaller margin already.
+          continue;
+        }
+        if (budget == 0) {
+          return 0;
+        }
+        budget--;
+        // Wrap around the antimeridian.
+        int wrappedX = ((x % (maxTile + 1)) + maxTile + 1) % (maxTile + 1);
+        int tileY = y;
+        executor.execute(
+            () -> {
+              if (generation.get() == requestGeneration) {
+                cache.prefetch(wrappedX, tileY, zoom);
+              }
+            });
+      }
+    }
+    return budget;
+  }
+
+  /**
+   * Returns the tiles covering the given bounds at {@code zoom} as {@code {minX, minY, maxX,
+   * maxY}}. {@code maxX} may exceed the last column when the bounds cross the antimeridian.
+   */
+  private static int[] tileRange(
+      double southLatitude,
+      double westLongitude,
+      double northLatitude,
+      double eastLongitude,
+      int zoom) {
+    int tileCount = 1 << zoom;
+    int minX = tileX(westLongitude, tileCount);
+    int maxX = tileX(eastLongitude, tileCount);
+    if (maxX < minX) {
+      maxX += tileCount;
+    }
+    return new int[] {
+      minX, tileY(northLatitude, tileCount), maxX, tileY(southLatitude, tileCount)
+    };
+  }
+
+  private static int tileX(double longitude, int tileCount) {
+    double normalized = ((longitude + 180) % 360 + 360) % 360 / 360;
+    return Math.min(tileCount - 1, (int) (normalized * tileCount));
+  }
+
+  private static int tileY(double latitude, int tileCount) {
+    // Web Mercator, clamped to the latitudes the map can show.
+    double clampedLatitude = Math.max(-85.0511, Math.min(85.0511, latitude));
+    double sinLatitude = Math.sin(Math.toRadians(clampedLatitude));
+    double y = 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+    return Math.max(0, Math.min(tileCount - 1, (int) (y * tileCount)));
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds tile URLs from a template, for use in {@link
+ * com.google.android.gms.maps.model.UrlTileProvider#getTileUrl} implementations.
+ *
+ * <p>The template may contain these placeholders:
+ *
+ * <ul>
+ *   <li>{@code {z}}: the zoom level.
+ *   <li>{@code {x}}: the column of the tile.
+ *   <li>{@code {y}}: the row of the tile, counted from the top (XYZ).
+ *   <li>{@code {-y}}: the row of the tile, counted from the bottom (TMS).
+ *   <li>{@code {q}}: the quadkey of the tile, as used by Bing Maps style tile servers.
+ * </ul>
+ *
+ * <p>The template is parsed once. Each URL is then assembled in a per-thread buffer, without the
+ * format string parsing and boxing of {@link String#format}; only the URL itself is allocated.
+ * A template can be used by several tile threads at once.
+ */
+public final class TileUrlTemplate {
+
+  private static final int ZOOM = 0;
+  private static final int X = 1;
+  private static final int Y = 2;
+  private static final int FLIPPED_Y = 3;
+  private static final int QUADKEY = 4;
+
+  private final String template;
+
+  /** The literal text before each placeholder, and after the last one. */
+  private final String[] literals;
+
+  private final int[] placeholders;
+
+  private final ThreadLocal<StringBuilder> buffers =
+      new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+          return new StringBuilder(template.length() + 32);
+        }
+      };
+
+  /**
+   * Parses {@code template}.
+   *
+   * @throws IllegalArgumentException if the template contains an unknown or unterminated
+   *     placeholder
+   */
+  public TileUrlTemplate(String template) {
+    this.template = template;
+    List<String> literalList = new ArrayList<>();
+    List<Integer> placeholderList = new ArrayList<>();
+    int literalStart = 0;
+    int open;
+    while ((open = template.indexOf('{', literalStart)) >= 0) {
+      int close = template.indexOf('}', open);
+      if (close < 0) {
+        throw new IllegalArgumentException("Unterminated placeholder in " + template);
+      }
+      literalList.add(template.substring(literalStart, open));
+      placeholderList.add(parsePlaceholder(template.substring(open + 1, close), template));
+      literalStart = close + 1;
+    }
+    literalList.add(template.substring(literalStart));
+
+    literals = literalList.toArray(new String[0]);
+    placeholders = new int[placeholderList.size()];
+    for (int i = 0; i < placeholders.length; i++) {
+      placeholders[i] = placeholderList.get(i);
+    }
+  }
+
+  /** Returns the URL of the tile, as expected by {@code UrlTileProvider.getTileUrl}. */
+  public URL getTileUrl(int x, int y, int zoom) {
+    try {
+      return new URL(format(x, y, zoom));
+    } catch (MalformedURLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Returns the URL of the tile as a string. */
+  public String format(int x, int y, int zoom) {
+    StringBuilder buffer = buffers.get();
+    buffer.setLength(0);
+    for (int i = 0; i < placeholders.length; i++) {
+      buffer.append(literals[i]);
+      switch (placeholders[i]) {
+        case ZOOM:
+          buffer.append(zoom);
+          break;
+        case X:
+          buffer.append(x);
+          break;
+        case Y:
+          buffer.append(y);
+          break;
+        case FLIPPED_Y:
+          buffer.append((1 << zoom) - y - 1);
+          break;
+        case QUADKEY:
+          appendQuadkey(buffer, x, y, zoom);
+          break;
+        default:
+          throw new AssertionError();
+      }
+    }
+    buffer.append(literals[placeholders.length]);
+    return buffer.toString();
+  }
+
+  private static void appendQuadkey(StringBuilder buffer, int x, int y, int zoom) {
+    // One base-4 digit per zoom level, from the most significant bit of the coordinates.
+    for (int level = zoom; level > 0; level--) {
+      int mask = 1 << (level - 1);
+      char digit = '0';
+      if ((x & mask) != 0) {
+        digit += 1;
+      }
+      if ((y & mask) != 0) {
+        digit += 2;
+      }
+      buffer.append(digit);
+    }
+  }
+
+  private static int parsePlaceholder(String name, String template) {
+    switch (name) {
+      case "z":
+        return ZOOM;
+      case "x":
+        return X;
+      case "y":
+        return Y;
+      case "-y":
+        return FLIPPED_Y;
+      case "q":
+        return QUADKEY;
+      default:
+        throw new IllegalArgumentException("Unknown placeholder {" + name + "} in " + template);
+    }
+  }
+}
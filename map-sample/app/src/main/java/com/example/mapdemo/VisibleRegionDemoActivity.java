@@ -18,13 +18,12 @@ package com.example.mapdemo;
 
 import android.content.res.Resources;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.SystemClock;
 import android.view.View;
 import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import com.example.mapdemo.EdgeToEdgeUtil.EdgeToEdgeMarginConfig;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -60,6 +59,8 @@ public class VisibleRegionDemoActivity extends AppCompatActivity
   int currentRight = 0;
   int currentBottom = 0;
 
+  @Nullable private AnimationScheduler.Animation paddingAnimation;
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
@@ -166,8 +167,6 @@ public class VisibleRegionDemoActivity extends AppCompatActivity
   public void animatePadding(
       final int toLeft, final int toTop, final int toRight, final int toBottom) {
 
-    final Handler handler = new Handler();
-    final long start = SystemClock.uptimeMillis();
     final long duration = 1000;
 
     final Interpolator interpolator = new OvershootInterpolator();
@@ -177,31 +176,31 @@ public class VisibleRegionDemoActivity extends AppCompatActivity
     final int startRight = currentRight;
     final int startBottom = currentBottom;
 
-    currentLeft = toLeft;
-    currentTop = toTop;
-    currentRight = toRight;
-    currentBottom = toBottom;
-
-    handler.post(
-        new Runnable() {
-          @Override
-          public void run() {
-            long elapsed = SystemClock.uptimeMillis() - start;
-            float t = interpolator.getInterpolation((float) elapsed / duration);
-
-            int left = (int) (startLeft + ((toLeft - startLeft) * t));
-            int top = (int) (startTop + ((toTop - startTop) * t));
-            int right = (int) (startRight + ((toRight - startRight) * t));
-            int bottom = (int) (startBottom + ((toBottom - startBottom) * t));
-
-            map.setPadding(left, top, right, bottom);
+    // A new animation takes over from wherever the previous one has got to.
+    if (paddingAnimation != null) {
+      paddingAnimation.cancel();
+    }
+    paddingAnimation =
+        AnimationScheduler.getInstance()
+            .animate(
+                duration,
+                interpolator,
+                t -> {
+                  currentLeft = (int) (startLeft + ((toLeft - startLeft) * t));
+                  currentTop = (int) (startTop + ((toTop - startTop) * t));
+                  currentRight = (int) (startRight + ((toRight - startRight) * t));
+                  currentBottom = (int) (startBottom + ((toBottom - startBottom) * t));
+
+                  map.setPadding(currentLeft, currentTop, currentRight, currentBottom);
+                });
+  }
 
-            if (elapsed < duration) {
-              // Post again 16ms later.
-              handler.postDelayed(this, 16);
-            }
-          }
-        });
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    if (paddingAnimation != null) {
+      paddingAnimation.cancel();
+    }
   }
 
   private void setMarginForEdgeToEdgeSupport() {
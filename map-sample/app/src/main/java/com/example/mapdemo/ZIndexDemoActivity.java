@@ -72,8 +72,6 @@ public class ZIndexDemoActivity extends AppCompatActivity
         RadioGroup.OnCheckedChangeListener,
         TextView.OnEditorActionListener {
 
-  private static final MoonTileProvider MOON_TILE_PROVIDER = new MoonTileProvider();
-
   private static final LatLng MARKER_LOCATION = new LatLng(-29.425, 137.02677172);
   private static final LatLng BRISBANE = new LatLng(-27.47093, 153.0235);
   private static final LatLng DARWIN = new LatLng(-12.425892, 130.86327);
@@ -226,7 +224,10 @@ public class ZIndexDemoActivity extends AppCompatActivity
 
   private void addObjectsToMap() {
     tileOverlayMoon =
-        map.addTileOverlay(new TileOverlayOptions().tileProvider(MOON_TILE_PROVIDER).zIndex(-1.0f));
+        map.addTileOverlay(
+            new TileOverlayOptions()
+                .tileProvider(MoonTileProvider.createOfflineFirst(this))
+                .zIndex(-1.0f));
     tileOverlayCoords =
         map.addTileOverlay(
             new TileOverlayOptions()
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import com.google.android.gms.maps.model.LatLng;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures one animation frame of the points control fragments for a large polygon, to compare
+ * against the 16.7 ms frame budget at 60 fps.
+ *
+ * <p>{@link #listFrame()} rebuilds every point through new lists, as the fragments did before
+ * {@link LatLngBuffer}. {@link #bufferFrame()} moves a {@link LatLngBuffer} and converts it for the
+ * map, as the fragments do now, and {@link #bufferTranslate()} only moves the buffer. {@link
+ * #bufferRotate()} and {@link #bufferScale()} measure the other in-place transforms of the buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MoveDirectionBenchmark {
+  private static final double STEP_SIZE_DEG = 0.0001;
+  private static final double RADIUS_DEG = 1;
+  private static final double ROTATION_DEG = 1;
+  private static final double SCALE_FACTOR = 1.01;
+
+  @Param({"1000", "10000"})
+  public int pointCount;
+
+  private List<LatLng> points;
+  private LatLngBuffer buffer;
+  private MoveDirection direction = MoveDirection.UP;
+  private boolean grow;
+
+  @Setup
+  public void setUp() {
+    // A circle around the origin, so no point is clamped while the shape moves back and forth.
+    points = new ArrayList<>(pointCount);
+    for (int i = 0; i < pointCount; i++) {
+      double angle = 2 * Math.PI * i / pointCount;
+      points.add(new LatLng(RADIUS_DEG * Math.sin(angle), RADIUS_DEG * Math.cos(angle)));
+    }
+    buffer = new LatLngBuffer(points);
+  }
+
+  @Benchmark
+  public List<LatLng> listFrame() {
+    nextDirection();
+    points =
+        movePointsInList(
+            points,
+            direction.getLatDistance(STEP_SIZE_DEG),
+            direction.getLngDistance(STEP_SIZE_DEG));
+    return points;
+  }
+
+  @Benchmark
+  public List<LatLng> bufferFrame() {
+    nextDirection();
+    direction.movePoints(buffer, STEP_SIZE_DEG);
+    return buffer.toLatLngList();
+  }
+
+  @Benchmark
+  public LatLngBuffer bufferTranslate() {
+    nextDirection();
+    direction.movePoints(buffer, STEP_SIZE_DEG);
+    return buffer;
+  }
+
+  @Benchmark
+  public LatLngBuffer bufferRotate() {
+    return buffer.rotate(ROTATION_DEG, /* centerLat= */ 0, /* centerLng= */ 0);
+  }
+
+  @Benchmark
+  public LatLngBuffer bufferScale() {
+    // Alternates between growing and shrinking, so the shape keeps its size.
+    grow = !grow;
+    double factor = grow ? SCALE_FACTOR : 1 / SCALE_FACTOR;
+    return buffer.scale(factor, /* centerLat= */ 0, /* centerLng= */ 0);
+  }
+
+  /** Alternates between moving up and down, so the shape stays in place. */
+  private void nextDirection() {
+    direction = direction == MoveDirection.UP ? MoveDirection.DOWN : MoveDirection.UP;
+  }
+
+  /** The per-frame translation that {@link LatLngBuffer} replaced. */
+  private static List<LatLng> movePointsInList(
+      List<LatLng> oldPoints, double latMoveDistance, double lngMoveDistance) {
+    List<LatLng> newPoints = new ArrayList<>(oldPoints.size());
+    for (LatLng oldPoint : oldPoints) {
+      newPoints.add(
+          new LatLng(oldPoint.latitude + latMoveDistance, oldPoint.longitude + lngMoveDistance));
+    }
+    return newPoints;
+  }
+
+  @Test
+  public void runBenchmarks() throws RunnerException {
+    JmhRunner.run(MoveDirectionBenchmark.class);
+  }
+}
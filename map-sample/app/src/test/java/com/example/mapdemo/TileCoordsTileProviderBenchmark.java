@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.mapdemo;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.android.gms.maps.model.Tile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * Measures how many PNG tiles per second {@link TileCoordsTileProvider} renders and encodes when 1,
+ * 4 and 8 tile threads fetch tiles at once, as the map does while flinging.
+ *
+ * <p>Tiles are drawn with Robolectric's native graphics, which runs the same Skia code as a device,
+ * so the numbers are comparable between runs on the same machine, though not with a device. JMH
+ * can't host this benchmark, since Android's graphics classes only work inside the Robolectric
+ * sandbox. Like the JMH benchmarks, it is skipped unless the build is invoked with {@code
+ * -Pbenchmark}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class TileCoordsTileProviderBenchmark {
+  private static final int[] THREAD_COUNTS = {1, 4, 8};
+  private static final float DENSITY = 2.625f;
+  private static final int ZOOM = 14;
+  private static final long WARMUP_MILLIS = 2_000;
+  private static final long MEASUREMENT_MILLIS = 5_000;
+
+  @Test
+  public void tilesPerSecond() throws Exception {
+    assumeTrue("Run with -Pbenchmark to run benchmarks.", Boolean.getBoolean("benchmark"));
+    for (int threadCount : THREAD_COUNTS) {
+      // A new provider per run, so every run starts with an empty render state pool.
+      TileCoordsTileProvider provider = new TileCoordsTileProvider(DENSITY);
+      renderTiles(provider, threadCount, WARMUP_MILLIS);
+      long tileCount = renderTiles(provider, threadCount, MEASUREMENT_MILLIS);
+      System.out.printf(
+          Locale.US,
+          "%d threads: %.0f tiles/s%n",
+          threadCount,
+          tileCount * 1000.0 / MEASUREMENT_MILLIS);
+    }
+  }
+
+  /** Fetches tiles on {@code threadCount} threads for {@code millis}, and returns how many. */
+  private static long renderTiles(TileCoordsTileProvider provider, int threadCount, long millis)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Long>> results = new ArrayList<>();
+      for (int thread = 0; thread < threadCount; thread++) {
+        int row = thread;
+        results.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+                  long count = 0;
+                  // Each thread walks its own row of tiles, so the labels differ between tiles.
+                  for (int x = 0; System.nanoTime() < deadlineNanos; x = (x + 1) % (1 << ZOOM)) {
+                    Tile tile = provider.getTile(x, row, ZOOM);
+                    assertNotNull(tile.data);
+                    count++;
+                  }
+                  return count;
+                }));
+      }
+      start.countDown();
+      long tileCount = 0;
+      for (Future<Long> result : results) {
+        tileCount += result.get();
+      }
+      return tileCount;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
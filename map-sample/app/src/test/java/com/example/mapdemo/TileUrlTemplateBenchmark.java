@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Compares building moon tile URLs with a {@link TileUrlTemplate} against the {@link
+ * String#format} code {@link MoonTileProvider} used before, for tiles across zoom levels 0 to 18.
+ *
+ * <p>The {@code *Url} benchmarks include the {@link URL} that {@code getTileUrl} returns, and the
+ * {@code *String} ones only the formatting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TileUrlTemplateBenchmark {
+  private static final long SEED = 42;
+  private static final int TILE_COUNT = 1024;
+  private static final int MAX_ZOOM = 18;
+  private static final String MOON_MAP_URL_FORMAT =
+      "http://mw1.google.com/mw-planetary/lunar/lunarmaps_v1/clem_bw/%d/%d/%d.jpg";
+  private static final TileUrlTemplate MOON_MAP_URL_TEMPLATE =
+      new TileUrlTemplate(
+          "http://mw1.google.com/mw-planetary/lunar/lunarmaps_v1/clem_bw/{z}/{x}/{-y}.jpg");
+
+  private final int[] xs = new int[TILE_COUNT];
+  private final int[] ys = new int[TILE_COUNT];
+  private final int[] zooms = new int[TILE_COUNT];
+  private int tile;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(SEED);
+    for (int i = 0; i < TILE_COUNT; i++) {
+      zooms[i] = random.nextInt(MAX_ZOOM + 1);
+      xs[i] = random.nextInt(1 << zooms[i]);
+      ys[i] = random.nextInt(1 << zooms[i]);
+    }
+  }
+
+  @Benchmark
+  public String templateString() {
+    tile = (tile + 1) % TILE_COUNT;
+    return MOON_MAP_URL_TEMPLATE.format(xs[tile], ys[tile], zooms[tile]);
+  }
+
+  @Benchmark
+  public String stringFormatString() {
+    tile = (tile + 1) % TILE_COUNT;
+    return formatWithStringFormat(xs[tile], ys[tile], zooms[tile]);
+  }
+
+  @Benchmark
+  public URL templateUrl() {
+    tile = (tile + 1) % TILE_COUNT;
+    return MOON_MAP_URL_TEMPLATE.getTileUrl(xs[tile], ys[tile], zooms[tile]);
+  }
+
+  @Benchmark
+  public URL stringFormatUrl() throws MalformedURLException {
+    tile = (tile + 1) % TILE_COUNT;
+    return new URL(formatWithStringFormat(xs[tile], ys[tile], zooms[tile]));
+  }
+
+  private static String formatWithStringFormat(int x, int y, int zoom) {
+    int reversedY = (1 << zoom) - y - 1;
+    return String.format(Locale.US, MOON_MAP_URL_FORMAT, zoom, x, reversedY);
+  }
+
+  @Test
+  public void runBenchmarks() throws RunnerException {
+    JmhRunner.run(TileUrlTemplateBenchmark.class);
+  }
+}
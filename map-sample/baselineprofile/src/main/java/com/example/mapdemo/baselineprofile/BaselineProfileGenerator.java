@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo.baselineprofile;
+
+import static com.example.mapdemo.baselineprofile.Journeys.PACKAGE_NAME;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Generates the Baseline Profile of the :app module from the startup and basic map journeys.
+ *
+ * <p>Run {@code ./gradlew :app:generateBaselineProfile} with a device connected; the profile is
+ * written to {@code app/src/main/generated/baselineProfiles} and packaged into every build.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class BaselineProfileGenerator {
+
+  @Rule public final BaselineProfileRule rule = new BaselineProfileRule();
+
+  @Test
+  public void generate() {
+    rule.collect(
+        PACKAGE_NAME,
+        /* maxIterations= */ 15,
+        /* stableIterations= */ 3,
+        /* outputFilePrefix= */ null,
+        /* includeInStartupProfile= */ true,
+        scope -> {
+          Journeys.grantPermissions(scope);
+          scope.pressHome();
+          Journeys.startAndWaitForDemoList(scope);
+          Journeys.openBasicMapDemo(scope);
+          Journeys.panAndZoomMap(scope);
+          return Unit.INSTANCE;
+        });
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo.baselineprofile;
+
+import static com.example.mapdemo.baselineprofile.Journeys.FIRST_MAP_FRAME_TRACE;
+import static com.example.mapdemo.baselineprofile.Journeys.PACKAGE_NAME;
+
+import android.os.SystemClock;
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.ExperimentalMetricApi;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import java.util.Collections;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the time from creating the basic map demo to its first fully rendered map frame,
+ * without and with the generated Baseline Profile.
+ */
+@ExperimentalMetricApi
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class FirstMapFrameBenchmark {
+
+  private static final int ITERATIONS = 10;
+  private static final long MAP_LOAD_MILLIS = 5_000;
+
+  @Rule public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+  @Test
+  public void firstMapFrameWithoutProfile() {
+    firstMapFrame(new CompilationMode.None());
+  }
+
+  @Test
+  public void firstMapFrameWithBaselineProfile() {
+    firstMapFrame(new CompilationMode.Partial(BaselineProfileMode.Require));
+  }
+
+  private void firstMapFrame(CompilationMode compilationMode) {
+    rule.measureRepeated(
+        PACKAGE_NAME,
+        Collections.singletonList(new TraceSectionMetric(FIRST_MAP_FRAME_TRACE)),
+        compilationMode,
+        /* startupMode= */ null,
+        ITERATIONS,
+        scope -> {
+          Journeys.grantPermissions(scope);
+          scope.killProcess();
+          Journeys.startAndWaitForDemoList(scope);
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          Journeys.openBasicMapDemo(scope);
+          // The trace section ends when the map has loaded its tiles, which has no UI signal to
+          // wait for.
+          SystemClock.sleep(MAP_LOAD_MILLIS);
+          return Unit.INSTANCE;
+        });
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo.baselineprofile;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/** User journeys through the demo app, shared by the profile generator and the benchmarks. */
+final class Journeys {
+
+  /** The application id of the :app module. */
+  static final String PACKAGE_NAME = "com.example.mapdemo";
+
+  /** Must match {@code BasicMapDemoActivity.FIRST_MAP_FRAME_TRACE} in the :app module. */
+  static final String FIRST_MAP_FRAME_TRACE = "FirstMapFrame";
+
+  private static final long UI_TIMEOUT_MILLIS = 10_000;
+
+  private Journeys() {}
+
+  /** Grants the location permission the demo list asks for, so no dialog blocks the journeys. */
+  static void grantPermissions(MacrobenchmarkScope scope) {
+    scope
+        .getDevice()
+        .executeShellCommand(
+            "pm grant " + scope.getPackageName() + " android.permission.ACCESS_FINE_LOCATION");
+  }
+
+  /** Starts the app from the launcher and waits until the demo list is shown. */
+  static void startAndWaitForDemoList(MacrobenchmarkScope scope) {
+    scope.startActivityAndWait();
+    if (!scope
+        .getDevice()
+        .wait(Until.hasObject(By.res(scope.getPackageName(), "demoListView")), UI_TIMEOUT_MILLIS)) {
+      throw new IllegalStateException("The demo list was not shown.");
+    }
+  }
+
+  /** Opens the basic map demo from the demo list and waits until its map is shown. */
+  static void openBasicMapDemo(MacrobenchmarkScope scope) {
+    scope.getDevice().findObject(By.text("Basic Map")).click();
+    if (!scope
+        .getDevice()
+        .wait(Until.hasObject(By.res(scope.getPackageName(), "map")), UI_TIMEOUT_MILLIS)) {
+      throw new IllegalStateException("The map was not shown.");
+    }
+  }
+
+  /** Pans and zooms the map of the basic map demo, which loads and renders more tiles. */
+  static void panAndZoomMap(MacrobenchmarkScope scope) {
+    UiObject2 map = scope.getDevice().findObject(By.res(scope.getPackageName(), "map"));
+    map.setGestureMargin(scope.getDevice().getDisplayWidth() / 5);
+    for (Direction direction : Direction.values()) {
+      map.fling(direction);
+      scope.getDevice().waitForIdle();
+    }
+    map.pinchOpen(/* percent= */ 0.5f);
+    scope.getDevice().waitForIdle();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.mapdemo.baselineprofile;
+
+import static com.example.mapdemo.baselineprofile.Journeys.PACKAGE_NAME;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.filters.LargeTest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Measures cold, warm and hot startup to the demo list, without and with the generated Baseline
+ * Profile.
+ */
+@RunWith(Parameterized.class)
+@LargeTest
+public class StartupBenchmarks {
+
+  private static final int ITERATIONS = 10;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<StartupMode> startupModes() {
+    return Arrays.asList(StartupMode.COLD, StartupMode.WARM, StartupMode.HOT);
+  }
+
+  @Rule public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+  private final StartupMode startupMode;
+
+  public StartupBenchmarks(StartupMode startupMode) {
+    this.startupMode = startupMode;
+  }
+
+  @Test
+  public void startupWithoutProfile() {
+    startup(new CompilationMode.None());
+  }
+
+  @Test
+  public void startupWithBaselineProfile() {
+    startup(new CompilationMode.Partial(BaselineProfileMode.Require));
+  }
+
+  private void startup(CompilationMode compilationMode) {
+    rule.measureRepeated(
+        PACKAGE_NAME,
+        Collections.singletonList(new StartupTimingMetric()),
+        compilationMode,
+        startupMode,
+        ITERATIONS,
+        scope -> {
+          Journeys.grantPermissions(scope);
+          scope.pressHome();
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          Journeys.startAndWaitForDemoList(scope);
+          return Unit.INSTANCE;
+        });
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.Handler
+import android.os.Looper
+import android.view.View
+import android.widget.AdapterView
+import android.widget.Spinner
+import com.example.navigationapidemo.NavigationMetrics.Counter
+import com.google.android.gms.maps.GoogleMap
+
+/**
+ * Tracks whether the camera follows the user's location, and in which perspective, for the camera
+ * perspective spinner in the customization panels.
+ *
+ * The state machine is the spinner's item selection listener for its whole lifetime:
+ * - Selecting the perspective the camera is already following in doesn't call `followMyLocation`
+ *   again.
+ * - The SDK's follow/unfollow callbacks are coalesced over [COALESCE_MILLIS], so a burst of flips
+ *   caused by gestures during guidance results in at most one state transition.
+ * - Programmatic spinner updates that reflect a transition are recognized when the spinner reports
+ *   them, instead of detaching and re-attaching the listener around every update.
+ *
+ * All methods must be called on the main thread.
+ */
+class CameraFollowStateMachine(
+  private val spinner: Spinner,
+  private val followMyLocation: (Int) -> Unit,
+) : AdapterView.OnItemSelectedListener {
+  enum class State {
+    NOT_FOLLOWING,
+    FOLLOWING,
+  }
+
+  var state = State.NOT_FOLLOWING
+    private set
+
+  /**
+   * The last camera perspective requested by the user. This is the perspective shown when the
+   * camera starts following the user's location on its own.
+   */
+  var perspective = GoogleMap.CameraPerspective.TILTED
+    private set
+
+  /** The number of times the state changed. */
+  var transitionCount = 0
+    private set
+
+  /** The number of `followMyLocation` calls skipped because they wouldn't change anything. */
+  var suppressedCallCount = 0
+    private set
+
+  private val handler = Handler(Looper.getMainLooper())
+  private var pendingFollowing: Boolean? = null
+  private var programmaticSelection = NO_SELECTION
+  private val applyPendingState = Runnable { applyPendingState() }
+
+  override fun onItemSelected(parent: AdapterView<*>?, view: View?, position: Int, id: Long) {
+    if (position == programmaticSelection) {
+      programmaticSelection = NO_SELECTION
+      return
+    }
+    // Position 0 is just a placeholder that explains the spinner's purpose.
+    val selectedPerspective = PERSPECTIVES.getOrNull(position - 1) ?: return
+    requestPerspective(selectedPerspective)
+  }
+
+  override fun onNothingSelected(parent: AdapterView<*>?) {
+    // Do nothing.
+  }
+
+  /** Makes the camera follow the user's location in [newPerspective], unless it already does. */
+  fun requestPerspective(newPerspective: Int) {
+    if (state == State.FOLLOWING && newPerspective == perspective) {
+      suppressedCallCount++
+      NavigationMetrics.increment(Counter.CAMERA_FOLLOW_CALLS_SUPPRESSED)
+      return
+    }
+    perspective = newPerspective
+    followMyLocation(newPerspective)
+  }
+
+  /** Called when the SDK reports that the camera started following the user's location. */
+  fun onCameraStartedFollowing() = scheduleState(following = true)
+
+  /** Called when the SDK reports that the camera stopped following the user's location. */
+  fun onCameraStoppedFollowing() = scheduleState(following = false)
+
+  private fun scheduleState(following: Boolean) {
+    pendingFollowing = following
+    handler.removeCallbacks(applyPendingState)
+    handler.postDelayed(applyPendingState, COALESCE_MILLIS)
+  }
+
+  private fun applyPendingState() {
+    val following = pendingFollowing ?: return
+    pendingFollowing = null
+    val newState = if (following) State.FOLLOWING else State.NOT_FOLLOWING
+    if (newState == state) {
+      return
+    }
+    state = newState
+    transitionCount++
+    NavigationMetrics.increment(Counter.CAMERA_FOLLOW_TRANSITIONS)
+
+    // Show the perspective being followed, or the placeholder when the camera isn't following.
+    val position = if (following) PERSPECTIVES.indexOf(perspective) + 1 else 0
+    if (spinner.selectedItemPosition != position) {
+      programmaticSelection = position
+      spinner.setSelection(position)
+    }
+  }
+
+  private companion object {
+    const val NO_SELECTION = -1
+
+    /** Follow/unfollow callbacks closer together than this are coalesced. */
+    const val COALESCE_MILLIS = 200L
+
+    /** The camera perspectives of spinner positions 1 and up. */
+    val PERSPECTIVES =
+      listOf(
+        GoogleMap.CameraPerspective.TILTED,
+        GoogleMap.CameraPerspective.TOP_DOWN_NORTH_UP,
+        GoogleMap.CameraPerspective.TOP_DOWN_HEADING_UP,
+      )
+  }
+}
@@ -26,9 +26,12 @@ import android.widget.Button
 import android.widget.LinearLayout
 import android.widget.ScrollView
 import android.widget.Spinner
+import android.widget.Toast
 import android.widget.ToggleButton
 import androidx.appcompat.app.AppCompatActivity
 import androidx.fragment.app.Fragment
+import com.example.navigationapidemo.NavigationMetrics.Counter
+import com.example.navigationapidemo.NavigationMetrics.Gauge
 import com.google.android.gms.maps.CameraUpdateFactory
 import com.google.android.gms.maps.GoogleMap
 import com.google.android.gms.maps.GoogleMap.OnCameraFollowLocationCallback
@@ -67,6 +70,29 @@ internal object CustomizationPanelsDelegate {
   /** The location of Melbourne. */
   private val MELBOURNE = LatLng(-37.813, 144.962)
 
+  /** The simulated trips replayed by the guidance load test. */
+  private val LOAD_TEST_SCENARIOS =
+    listOf(
+      GuidanceLoadGenerator.Scenario(
+        "CBD to St Kilda",
+        origin = MELBOURNE,
+        destination = LatLng(-37.867, 144.981),
+      ),
+      GuidanceLoadGenerator.Scenario(
+        "Richmond to Docklands",
+        origin = LatLng(-37.823, 145.000),
+        destination = LatLng(-37.815, 144.946),
+      ),
+      GuidanceLoadGenerator.Scenario(
+        "Footscray to Brunswick",
+        origin = LatLng(-37.800, 144.900),
+        destination = LatLng(-37.767, 144.961),
+      ),
+    )
+
+  /** The simulation speed multipliers each load test scenario is replayed at. */
+  private val LOAD_TEST_SPEED_MULTIPLIERS = listOf(1f, 5f, 20f)
+
   /**
    * A map from the resource ID of a toggle button to the resource ID of the panel it should
    * show/hide upon toggle.
@@ -165,39 +191,7 @@ internal object CustomizationPanelsDelegate {
     val cameraPerspectiveSpinner = activity.findViewById<Spinner>(R.id.follow_my_location_spinner)
     cameraPerspectiveSpinner.adapter = cameraPerspectiveAdapter
     cameraPerspectiveSpinner.onItemSelectedListener =
-      object : OnCameraPerspectiveSelectedListener {
-        // We keep track of the last camera perspective that was explicitly set by the
-        // user. So that if we start automatically following the user's location later,
-        // we know which camera perspective to show as being active.
-        override var lastSetNonZeroPosition = 1
-          private set
-
-        override fun onItemSelected(parent: AdapterView<*>?, view: View, position: Int, id: Long) {
-          when (position) {
-            0 -> {}
-            1 -> {
-              lastSetNonZeroPosition = 1
-              onCameraPerspectiveOptionChange(GoogleMap.CameraPerspective.TILTED)
-            }
-            2 -> {
-              lastSetNonZeroPosition = 2
-              onCameraPerspectiveOptionChange(GoogleMap.CameraPerspective.TOP_DOWN_NORTH_UP)
-            }
-            3 -> {
-              lastSetNonZeroPosition = 3
-              onCameraPerspectiveOptionChange(GoogleMap.CameraPerspective.TOP_DOWN_HEADING_UP)
-            }
-            else -> {
-              lastSetNonZeroPosition = 3
-              onCameraPerspectiveOptionChange(GoogleMap.CameraPerspective.TOP_DOWN_HEADING_UP)
-            }
-          }
-        }
-
-        override fun onNothingSelected(parent: AdapterView<*>?) {
-          // Do nothing.
-        }
-      }
+      CameraFollowStateMachine(cameraPerspectiveSpinner, onCameraPerspectiveOptionChange)
   }
 
   ///////////////////////////////////////////////////////////////////////////////////////
@@ -272,35 +266,73 @@ internal object CustomizationPanelsDelegate {
     }
   }
 
+  /**
+   * Toggles the guidance load generator, which replays simulated trips around Melbourne back to
+   * back and logs a [GuidanceLoadGenerator.ScenarioReport] for each of them.
+   *
+   * @return the new GuidanceLoadGenerator state to manage, to pass in upon the next user-click
+   */
+  fun toggleGuidanceLoadGenerator(
+    activity: Activity,
+    navigator: Navigator,
+    existingGenerator: GuidanceLoadGenerator?,
+  ): GuidanceLoadGenerator? {
+    if (existingGenerator != null) {
+      existingGenerator.stop()
+      return null
+    }
+    if (!BuildConfig.GUIDANCE_LOAD_TEST_ENABLED) {
+      Toast.makeText(activity, "The load test only runs in debug builds", Toast.LENGTH_SHORT).show()
+      return null
+    }
+    val generator =
+      GuidanceLoadGenerator(
+        navigator,
+        LOAD_TEST_SCENARIOS,
+        LOAD_TEST_SPEED_MULTIPLIERS,
+        onFinished = { reports ->
+          if (!activity.isFinishing) {
+            activity.findViewById<ToggleButton>(R.id.btn_guidance_load_test).isChecked = false
+            Toast.makeText(
+                activity,
+                "Load test finished: ${reports.size} runs, check the logcat for the reports",
+                Toast.LENGTH_LONG,
+              )
+              .show()
+          }
+        },
+      )
+    generator.start()
+    return generator
+  }
+
+  /**
+   * Records the current trip state as [NavigationMetrics] gauges, and logs the route segment and a
+   * snapshot of all navigation metrics.
+   */
   fun Navigator.logDebugInfo() {
     currentRouteSegment?.let {
+      NavigationMetrics.set(Gauge.CURRENT_SEGMENT_POINTS, it.latLngs.size.toLong())
       Log.i(
         TAG,
         MoreObjects.toStringHelper("RouteSegment")
           .add("Destination LatLng", it.destinationLatLng)
           .add("Destination Waypoint", it.destinationWaypoint)
           .add("Traffic Data", it.trafficData)
-          .add("List<LatLng> for segment", it.latLngs)
+          .add("Points in segment", it.latLngs.size)
           .toString(),
       )
     }
 
-    val stringifiedTraveledRoute =
-      MoreObjects.toStringHelper(traveledRoute)
-        .add("List<LatLng> already traveled", traveledRoute)
-        .toString()
-    Log.i(TAG, stringifiedTraveledRoute)
+    NavigationMetrics.set(Gauge.TRAVELED_ROUTE_POINTS, traveledRoute.size.toLong())
 
     currentTimeAndDistance?.let {
-      Log.i(
-        TAG,
-        MoreObjects.toStringHelper(it)
-          .add("Delay severity", it.delaySeverity)
-          .add("Meters", it.meters)
-          .add("Seconds", it.seconds)
-          .toString(),
-      )
+      NavigationMetrics.set(Gauge.REMAINING_METERS, it.meters.toLong())
+      NavigationMetrics.set(Gauge.REMAINING_SECONDS, it.seconds.toLong())
+      NavigationMetrics.set(Gauge.DELAY_SEVERITY, it.delaySeverity.toLong())
     }
+
+    Log.i(TAG, NavigationMetrics.snapshot().toString())
   }
 
   ///////////////////////////////////////////////////////////////////////////////////////
@@ -314,53 +346,30 @@ internal object CustomizationPanelsDelegate {
    * sometimes change without explicitly calling [ ][GoogleMap.followMyLocation]. For instance, when
    * you pan or animate the camera to hover over a specified location. In cases where that happens,
    * the user of the demo app should always see the correct camera perspective being displayed.
+   *
+   * The callbacks are forwarded to the spinner's [CameraFollowStateMachine], which coalesces rapid
+   * follow/unfollow flips before updating the spinner.
    */
   fun registerOnCameraFollowLocationCallback(activity: Activity, map: GoogleMap) {
     map.setOnFollowMyLocationCallback(
       object : OnCameraFollowLocationCallback {
         override fun onCameraStartedFollowingLocation() {
-          // The camera started following the user's location.
-          val cameraPerspectiveSpinner =
-            activity.findViewById<Spinner>(R.id.follow_my_location_spinner)
-          if (cameraPerspectiveSpinner.selectedItemPosition != 0) {
-            // The spinner is already showing the user's last-selected camera perspective.
-            // So we don't need to update it.
-          } else {
-            // The spinner isn't showing the user's last-selected camera perspective. This
-            // can be for many reasons. Maybe the user manually reset the spinner, or the
-            // user set the "Navigation UI" toggle button to "false". Or they requested to
-            // move the camera to Melbourne, thereby disabling the camera from following.
-            //
-            // At any rate, we want to make sure the last camera perspective is
-            // displayed.
-            val listener =
-              cameraPerspectiveSpinner.onItemSelectedListener
-                as OnCameraPerspectiveSelectedListener?
-            val currentCameraPerspective =
-              if (listener?.lastSetNonZeroPosition == null) {
-                1 // The default camera perspective is TILTED.
-              } else {
-                listener.lastSetNonZeroPosition
-              }
-            // All we want to do is to update the spinner with the last-set perspective.
-            // We don't actually want to trigger the listener itself.
-            cameraPerspectiveSpinner.onItemSelectedListener = null
-            cameraPerspectiveSpinner.setSelection(currentCameraPerspective)
-            cameraPerspectiveSpinner.onItemSelectedListener = listener
-          }
+          NavigationMetrics.increment(Counter.CAMERA_FOLLOW_STARTED)
+          cameraFollowStateMachine(activity)?.onCameraStartedFollowing()
         }
 
         override fun onCameraStoppedFollowingLocation() {
-          // The camera stopped following the user's location. Reset the camera perspective
-          // spinner accordingly.
-          val cameraPerspectiveSpinner =
-            activity.findViewById<Spinner>(R.id.follow_my_location_spinner)
-          cameraPerspectiveSpinner.setSelection(/* position= */ 0)
+          NavigationMetrics.increment(Counter.CAMERA_FOLLOW_STOPPED)
+          cameraFollowStateMachine(activity)?.onCameraStoppedFollowing()
         }
       }
     )
   }
 
+  private fun cameraFollowStateMachine(activity: Activity): CameraFollowStateMachine? =
+    activity.findViewById<Spinner>(R.id.follow_my_location_spinner).onItemSelectedListener
+      as CameraFollowStateMachine?
+
   /**
    * Changes the "checked" state of the "Navigation UI" toggle button if we detect that the value
    * has changed.
@@ -379,15 +388,4 @@ internal object CustomizationPanelsDelegate {
       navigationUiEnabled.isChecked = isNavigationUiEnabled
     }
   }
-
-  /** An item selection listener for use with the camera perspective spinner. */
-  private interface OnCameraPerspectiveSelectedListener : AdapterView.OnItemSelectedListener {
-    /**
-     * Gets the last non-zero position for the Camera Perspective spinner.
-     *
-     * Note that this will ignore selections of the default (0-positioned) value of the spinner,
-     * since that's just a dummy element to explain the spinner's purpose.
-     */
-    val lastSetNonZeroPosition: Int
-  }
 }
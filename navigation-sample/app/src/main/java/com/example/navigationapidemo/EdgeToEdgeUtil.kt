@@ -20,6 +20,7 @@ package com.example.navigationapidemo
 import android.view.View
 import android.view.ViewGroup.MarginLayoutParams
 import androidx.core.graphics.Insets
+import androidx.core.view.OnApplyWindowInsetsListener
 import androidx.core.view.ViewCompat
 import androidx.core.view.WindowInsetsCompat
 import com.google.auto.value.AutoValue
@@ -77,8 +78,9 @@ object EdgeToEdgeUtil {
   /**
    * Applies margins for the provided configs.
    *
-   * <p>A callback is provided to the window inset listener to adjust margins, ensuring that views
-   * are not obscured by the system bars.
+   * <p>The configs are registered with the [InsetCoordinator] of the window their views belong to.
+   * The coordinator is the only window inset listener, so the insets are computed once per inset
+   * dispatch and then fanned out to every registered view.
    *
    * <p>Note: The callbacks are only invoked when the edge-to-edge is enabled and because we are not
    * manually enabling it, they'll be invoked for Android V+ devices.
@@ -87,30 +89,85 @@ object EdgeToEdgeUtil {
    */
   fun applyMargins(edgeToEdgeMarginConfigs: List<EdgeToEdgeMarginConfig>): Unit {
     for (edgeToEdgeMarginConfig in edgeToEdgeMarginConfigs) {
-      ViewCompat.setOnApplyWindowInsetsListener(
-        edgeToEdgeMarginConfig.view,
-        { v, windowInsets ->
-          val insets = windowInsets.getInsets(WindowInsetsCompat.Type.systemBars())
-          // Apply the insets as a margin to the view.
-          val mlp = v.layoutParams as MarginLayoutParams
-          if (edgeToEdgeMarginConfig.shouldSetLeftMargin) {
-            mlp.leftMargin = insets.left
-          }
-          if (edgeToEdgeMarginConfig.shouldSetRightMargin) {
-            mlp.rightMargin = insets.right
-          }
-          if (edgeToEdgeMarginConfig.shouldSetTopMargin) {
-            mlp.topMargin = insets.top
-          }
-          if (edgeToEdgeMarginConfig.shouldSetBottomMargin) {
-            mlp.bottomMargin = insets.bottom
-          }
-          v.layoutParams = mlp
-
-          // Return the window insets to keep passing down to descendant views.
-          windowInsets
-        },
-      )
+      InsetCoordinator.forView(edgeToEdgeMarginConfig.view).register(edgeToEdgeMarginConfig)
+    }
+  }
+
+  /**
+   * Applies [insets] as margins to the view of [edgeToEdgeMarginConfig], ensuring that it is not
+   * obscured by the system bars. The layout params are left untouched if the margins are unchanged,
+   * so that no layout pass is requested.
+   */
+  private fun applyMargins(edgeToEdgeMarginConfig: EdgeToEdgeMarginConfig, insets: Insets) {
+    val view = edgeToEdgeMarginConfig.view
+    val mlp = view.layoutParams as MarginLayoutParams
+    val left = if (edgeToEdgeMarginConfig.shouldSetLeftMargin) insets.left else mlp.leftMargin
+    val right = if (edgeToEdgeMarginConfig.shouldSetRightMargin) insets.right else mlp.rightMargin
+    val top = if (edgeToEdgeMarginConfig.shouldSetTopMargin) insets.top else mlp.topMargin
+    val bottom =
+      if (edgeToEdgeMarginConfig.shouldSetBottomMargin) insets.bottom else mlp.bottomMargin
+    if (
+      left == mlp.leftMargin &&
+        right == mlp.rightMargin &&
+        top == mlp.topMargin &&
+        bottom == mlp.bottomMargin
+    ) {
+      return
+    }
+    mlp.setMargins(left, top, right, bottom)
+    view.layoutParams = mlp
+  }
+
+  /**
+   * Listens to the window insets of a window's content view, and applies them to every view
+   * registered with it.
+   *
+   * <p>Only the system bar insets are used, so inset dispatches that only change other insets (for
+   * example, the IME being shown) don't touch any registered view.
+   */
+  private class InsetCoordinator : OnApplyWindowInsetsListener {
+    private val edgeToEdgeMarginConfigs = mutableListOf<EdgeToEdgeMarginConfig>()
+    private var lastInsets: Insets? = null
+
+    fun register(edgeToEdgeMarginConfig: EdgeToEdgeMarginConfig) {
+      edgeToEdgeMarginConfigs.removeAll { it.view === edgeToEdgeMarginConfig.view }
+      edgeToEdgeMarginConfigs.add(edgeToEdgeMarginConfig)
+      // Views registered after the last dispatch get the current insets right away.
+      lastInsets?.let { applyMargins(edgeToEdgeMarginConfig, it) }
+    }
+
+    override fun onApplyWindowInsets(
+      v: View,
+      windowInsets: WindowInsetsCompat,
+    ): WindowInsetsCompat {
+      val insets = windowInsets.getInsets(WindowInsetsCompat.Type.systemBars())
+      if (insets != lastInsets) {
+        lastInsets = insets
+        for (edgeToEdgeMarginConfig in edgeToEdgeMarginConfigs) {
+          applyMargins(edgeToEdgeMarginConfig, insets)
+        }
+      }
+      // Let the content view handle the insets as usual, and keep passing them down to descendant
+      // views.
+      return ViewCompat.onApplyWindowInsets(v, windowInsets)
+    }
+
+    companion object {
+      /**
+       * Returns the coordinator of the window [view] belongs to, which is hosted by the window's
+       * content view. A view that isn't part of a window's hierarchy hosts its own coordinator.
+       */
+      fun forView(view: View): InsetCoordinator {
+        val host = view.rootView.findViewById<View>(android.R.id.content) ?: view
+        (host.getTag(R.id.edge_to_edge_inset_coordinator) as InsetCoordinator?)?.let {
+          return it
+        }
+        val coordinator = InsetCoordinator()
+        host.setTag(R.id.edge_to_edge_inset_coordinator, coordinator)
+        ViewCompat.setOnApplyWindowInsetsListener(host, coordinator)
+        ViewCompat.requestApplyInsets(host)
+        return coordinator
+      }
     }
   }
 }
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.Debug
+import android.os.Handler
+import android.os.Looper
+import android.os.Process
+import android.os.SystemClock
+import android.util.Log
+import android.view.Choreographer
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.navigation.Navigator
+import com.google.android.libraries.navigation.Navigator.RouteStatus
+import com.google.android.libraries.navigation.SimulationOptions
+import com.google.android.libraries.navigation.Waypoint
+import kotlin.random.Random
+
+/**
+ * Replays simulated trips back to back to put guidance under sustained load.
+ *
+ * Every [Scenario] is driven once per entry in `speedMultipliers`. While a trip is in progress, the
+ * simulated vehicle is randomly pushed off the route, which makes the Navigator reroute, and may be
+ * teleported to the destination early, which makes it report an arrival. For each run, a
+ * [ScenarioReport] records the CPU time used by the process, the bytes allocated, the frames that
+ * took longer than [FRAME_BUDGET_NANOS], and the latency between triggering a reroute or an
+ * arrival and the matching [Navigator.RouteChangedListener] or [Navigator.ArrivalListener]
+ * callback.
+ *
+ * While the generator runs, [NavigatorEventRegistry] dispatch is suspended, so the synthetic
+ * arrivals and reroutes don't reach the activity's subscribers, which would otherwise clear the
+ * destinations or end the trip telemetry.
+ *
+ * [random], [cpuTimeMillis] and [allocatedBytes] can be replaced to drive the generator on the JVM
+ * against a fake Navigator.
+ *
+ * The generator relies on the Navigator's simulator, so it should only be used in development
+ * builds, see `BuildConfig.GUIDANCE_LOAD_TEST_ENABLED`.
+ * All methods must be called on the main thread.
+ */
+class GuidanceLoadGenerator(
+  private val navigator: Navigator,
+  private val scenarios: List<Scenario>,
+  private val speedMultipliers: List<Float>,
+  private val onFinished: (List<ScenarioReport>) -> Unit,
+  private val random: Random = Random.Default,
+  private val cpuTimeMillis: () -> Long = Process::getElapsedCpuTime,
+  private val allocatedBytes: () -> Long = ::runtimeAllocatedBytes,
+) {
+  /** A simulated trip from [origin] to [destination]. */
+  data class Scenario(val name: String, val origin: LatLng, val destination: LatLng)
+
+  /** The measurements recorded while replaying a [Scenario] at a given speed multiplier. */
+  data class ScenarioReport(
+    val scenarioName: String,
+    val speedMultiplier: Float,
+    val routeStatus: RouteStatus,
+    val durationMillis: Long,
+    val cpuMillis: Long,
+    val allocatedBytes: Long,
+    val frameCount: Int,
+    val droppedFrameCount: Int,
+    val rerouteCount: Int,
+    val averageRouteChangedLatencyMillis: Long,
+    val maxRouteChangedLatencyMillis: Long,
+    val arrivalLatencyMillis: Long,
+  ) {
+    /** The allocation rate over the run, in kilobytes per second. */
+    val allocationRateKbPerSecond: Long
+      get() = if (durationMillis == 0L) 0 else allocatedBytes / durationMillis
+  }
+
+  private val handler = Handler(Looper.getMainLooper())
+  private val reports = mutableListOf<ScenarioReport>()
+  private val routeChangedLatenciesMillis = mutableListOf<Long>()
+
+  private var runIndex = 0
+  private var running = false
+  private var finished = false
+  private var runStartMillis = 0L
+  private var runStartCpuMillis = 0L
+  private var runStartAllocatedBytes = 0L
+  private var lastFrameTimeNanos = 0L
+  private var frameCount = 0
+  private var droppedFrameCount = 0
+  private var rerouteRequestedAtMillis = 0L
+  private var arrivalRequestedAtMillis = 0L
+  private var rerouteCount = 0
+
+  private val frameCallback =
+    object : Choreographer.FrameCallback {
+      override fun doFrame(frameTimeNanos: Long) {
+        if (!running) {
+          return
+        }
+        if (lastFrameTimeNanos != 0L) {
+          frameCount++
+          if (frameTimeNanos - lastFrameTimeNanos > FRAME_BUDGET_NANOS) {
+            droppedFrameCount++
+          }
+        }
+        lastFrameTimeNanos = frameTimeNanos
+        Choreographer.getInstance().postFrameCallback(this)
+      }
+    }
+
+  private val routeChangedListener =
+    Navigator.RouteChangedListener {
+      if (rerouteRequestedAtMillis != 0L) {
+        routeChangedLatenciesMillis.add(SystemClock.elapsedRealtime() - rerouteRequestedAtMillis)
+        rerouteRequestedAtMillis = 0L
+        // Pushing the vehicle off the route stops the simulation, so resume it along the new route.
+        navigator.simulator.simulateLocationsAlongExistingRoute(
+          SimulationOptions().speedMultiplier(currentSpeedMultiplier())
+        )
+      }
+    }
+
+  private val arrivalListener =
+    Navigator.ArrivalListener {
+      val arrivalLatencyMillis =
+        if (arrivalRequestedAtMillis == 0L) 0L
+        else SystemClock.elapsedRealtime() - arrivalRequestedAtMillis
+      finishRun(RouteStatus.OK, arrivalLatencyMillis)
+    }
+
+  private val rerouteRunnable = Runnable { pushVehicleOffRoute() }
+  private val arrivalRunnable = Runnable { teleportVehicleToDestination() }
+
+  /** Starts replaying every scenario at every speed multiplier. */
+  fun start() {
+    check(!running && !finished && runIndex == 0) { "The load generator can only be started once." }
+    NavigatorEventRegistry.suspendDispatch()
+    navigator.addRouteChangedListener(routeChangedListener)
+    navigator.addArrivalListener(arrivalListener)
+    startRun()
+  }
+
+  /** Stops the current run early. [onFinished] is invoked with the runs completed so far. */
+  fun stop() {
+    if (finished) {
+      return
+    }
+    running = false
+    tearDown()
+  }
+
+  private fun currentScenario() = scenarios[runIndex / speedMultipliers.size]
+
+  private fun currentSpeedMultiplier() = speedMultipliers[runIndex % speedMultipliers.size]
+
+  private fun startRun() {
+    if (runIndex >= scenarios.size * speedMultipliers.size) {
+      tearDown()
+      return
+    }
+    val scenario = currentScenario()
+    navigator.simulator.setUserLocation(scenario.origin)
+
+    val waypoint =
+      Waypoint.builder()
+        .setLatLng(scenario.destination.latitude, scenario.destination.longitude)
+        .build()
+    navigator.setDestination(waypoint).setOnResultListener { code ->
+      if (finished) {
+        return@setOnResultListener
+      }
+      if (code != RouteStatus.OK) {
+        Log.w(TAG, "${scenario.name}: could not start guidance: $code")
+        running = true
+        resetRunMetrics()
+        finishRun(code, arrivalLatencyMillis = 0L)
+        return@setOnResultListener
+      }
+
+      running = true
+      resetRunMetrics()
+      Choreographer.getInstance().postFrameCallback(frameCallback)
+
+      navigator.simulator.simulateLocationsAlongExistingRoute(
+        SimulationOptions().speedMultiplier(currentSpeedMultiplier())
+      )
+      navigator.startGuidance()
+
+      // Schedule a few reroutes and an early arrival at random times. Reroutes scheduled after the
+      // arrival, or after the simulated vehicle arrives on its own, are dropped when the arrival
+      // listener finishes the run.
+      for (i in 1..random.nextInt(MAX_REROUTES_PER_RUN + 1)) {
+        val delayMillis = i * random.nextLong(MIN_EVENT_DELAY_MILLIS, MAX_EVENT_DELAY_MILLIS)
+        handler.postDelayed(rerouteRunnable, delayMillis)
+      }
+      handler.postDelayed(
+        arrivalRunnable,
+        random.nextLong(MIN_EVENT_DELAY_MILLIS, MAX_RUN_DURATION_MILLIS + 1),
+      )
+    }
+  }
+
+  private fun resetRunMetrics() {
+    runStartMillis = SystemClock.elapsedRealtime()
+    runStartCpuMillis = cpuTimeMillis()
+    runStartAllocatedBytes = allocatedBytes()
+    lastFrameTimeNanos = 0L
+    frameCount = 0
+    droppedFrameCount = 0
+    rerouteRequestedAtMillis = 0L
+    arrivalRequestedAtMillis = 0L
+    rerouteCount = 0
+    routeChangedLatenciesMillis.clear()
+  }
+
+  private fun pushVehicleOffRoute() {
+    if (!running) {
+      return
+    }
+    // The last traveled point is the simulated vehicle's current position.
+    val location = navigator.traveledRoute.lastOrNull() ?: return
+    rerouteCount++
+    rerouteRequestedAtMillis = SystemClock.elapsedRealtime()
+    navigator.simulator.setUserLocation(
+      LatLng(location.latitude + OFF_ROUTE_OFFSET_DEGREES, location.longitude)
+    )
+  }
+
+  private fun teleportVehicleToDestination() {
+    if (!running) {
+      return
+    }
+    arrivalRequestedAtMillis = SystemClock.elapsedRealtime()
+    navigator.simulator.setUserLocation(currentScenario().destination)
+  }
+
+  private fun finishRun(routeStatus: RouteStatus, arrivalLatencyMillis: Long) {
+    if (!running) {
+      return
+    }
+    running = false
+    handler.removeCallbacks(rerouteRunnable)
+    handler.removeCallbacks(arrivalRunnable)
+    Choreographer.getInstance().removeFrameCallback(frameCallback)
+    navigator.stopGuidance()
+    navigator.clearDestinations()
+    navigator.simulator.unsetUserLocation()
+
+    val report =
+      ScenarioReport(
+        scenarioName = currentScenario().name,
+        speedMultiplier = currentSpeedMultiplier(),
+        routeStatus = routeStatus,
+        durationMillis = SystemClock.elapsedRealtime() - runStartMillis,
+        cpuMillis = cpuTimeMillis() - runStartCpuMillis,
+        allocatedBytes = allocatedBytes() - runStartAllocatedBytes,
+        frameCount = frameCount,
+        droppedFrameCount = droppedFrameCount,
+        rerouteCount = rerouteCount,
+        averageRouteChangedLatencyMillis =
+          if (routeChangedLatenciesMillis.isEmpty()) 0
+          else routeChangedLatenciesMillis.sum() / routeChangedLatenciesMillis.size,
+        maxRouteChangedLatencyMillis = routeChangedLatenciesMillis.maxOrNull() ?: 0,
+        arrivalLatencyMillis = arrivalLatencyMillis,
+      )
+    Log.i(TAG, report.toString())
+    reports.add(report)
+
+    runIndex++
+    // Let the Navigator settle before starting the next trip.
+    handler.post { startRun() }
+  }
+
+  private fun tearDown() {
+    handler.removeCallbacksAndMessages(null)
+    Choreographer.getInstance().removeFrameCallback(frameCallback)
+    navigator.removeRouteChangedListener(routeChangedListener)
+    navigator.removeArrivalListener(arrivalListener)
+    navigator.stopGuidance()
+    navigator.clearDestinations()
+    navigator.simulator.unsetUserLocation()
+    NavigatorEventRegistry.resumeDispatch()
+    finished = true
+    onFinished(reports.toList())
+  }
+
+  private companion object {
+    const val TAG = "GuidanceLoadGenerator"
+
+    /** Frames that take longer than 1.5 vsync intervals at 60 fps are counted as dropped. */
+    const val FRAME_BUDGET_NANOS = 25_000_000L
+
+    const val MAX_REROUTES_PER_RUN = 3
+    const val MIN_EVENT_DELAY_MILLIS = 5_000L
+    const val MAX_EVENT_DELAY_MILLIS = 15_000L
+    const val MAX_RUN_DURATION_MILLIS = 60_000L
+
+    /** Roughly 300 meters, far enough from any road segment to trigger a reroute. */
+    const val OFF_ROUTE_OFFSET_DEGREES = 0.003
+  }
+}
+
+/** Total bytes allocated by the runtime since the process started. */
+private fun runtimeAllocatedBytes(): Long =
+  Debug.getRuntimeStat("art.gc.bytes-allocated")?.toLongOrNull() ?: 0L
@@ -186,6 +186,10 @@ object ManeuverUtils {
   fun getManeuverIconResId(stepInfo: StepInfo): Int =
     maneuverInfoMap.getValue(stepInfo.maneuver).iconResId
 
+  /** The distinct icon resource ids of all maneuvers, for preloading them. */
+  val maneuverIconResIds: Set<Int>
+    get() = maneuverInfoMap.values.mapTo(mutableSetOf()) { it.iconResId }
+
   /** Stores the maneuver's name and icon resource id. */
   private class ManeuverInfo(val name: String, val iconResId: Int)
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.tasks.Task
+import com.google.android.gms.tasks.Tasks
+import com.google.android.libraries.navigation.Navigator
+import com.google.android.libraries.navigation.Waypoint
+import com.google.android.libraries.navigation.Waypoint.UnsupportedPlaceIdException
+import com.google.android.libraries.places.api.model.Place
+import com.google.android.libraries.places.api.model.PlaceTypes
+import com.google.android.libraries.places.api.net.FetchPlaceRequest
+import com.google.android.libraries.places.api.net.FetchPlaceResponse
+import com.google.android.libraries.places.api.net.PlacesClient
+import java.io.File
+import java.util.concurrent.Executors
+import kotlin.math.asin
+import kotlin.math.cos
+import kotlin.math.floor
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * Plans trips with many stops, such as a delivery driver's shift.
+ *
+ * Stops are ordered with a nearest-neighbor tour from the driver's location, improved with 2-opt
+ * moves over a matrix of straight-line distances, so that they can be submitted to the [Navigator]
+ * in a single [Navigator.setDestinations] call. A whole shift can be planned at once from a stop
+ * list, see [loadStopList].
+ *
+ * The most recently planned orders are cached by stops and by the origin, rounded to roughly a
+ * kilometer. Re-planning the remaining stops after a reroute therefore reuses the cached order
+ * while the driver is still near where it was planned, and only runs the heuristic again once they
+ * have moved on.
+ *
+ * All methods must be called on the main thread.
+ */
+class MultiStopRoutePlanner {
+  private data class TourKey(val originCell: Long, val stopKeys: List<String>)
+
+  private val cachedOrders =
+    object : LinkedHashMap<TourKey, List<String>>(MAX_CACHED_ORDERS, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<TourKey, List<String>>) =
+        size > MAX_CACHED_ORDERS
+    }
+
+  /**
+   * Orders [stops] into a short tour starting at [origin], reusing the cached order if the same
+   * stops have been planned from nearby before. Stops that appear more than once are all kept.
+   *
+   * Every stop must have a location. Stops without a place ID, such as sites from the [SiteIndex],
+   * are told apart by their location.
+   */
+  fun orderStops(origin: LatLng, stops: List<Place>): List<Place> {
+    val stopKeys = stops.map { stopKey(it) }
+    val key = TourKey(originCell(origin), stopKeys.sorted())
+    val cachedOrder = cachedOrders[key]
+    if (cachedOrder != null) {
+      // Duplicate stops share a key, so hand out each of them once.
+      val stopsByKey = stops.groupByTo(mutableMapOf()) { stopKey(it) }
+      return cachedOrder.map { stopsByKey.getValue(it).removeAt(0) }
+    }
+
+    val startMillis = SystemClock.elapsedRealtime()
+    val order = shortestTour(origin, stops.map { requireNotNull(it.latLng) })
+    Log.d(TAG, "Ordered ${stops.size} stops in ${SystemClock.elapsedRealtime() - startMillis}ms")
+
+    cachedOrders[key] = order.map { stopKeys[it] }
+    return order.map { stops[it] }
+  }
+
+  companion object {
+    private const val TAG = "MultiStopRoutePlanner"
+    private const val EARTH_RADIUS_METERS = 6_371_000.0
+
+    /** The 2-opt pass limit, which bounds planning time for very long stop lists. */
+    private const val MAX_TWO_OPT_PASSES = 50
+
+    private const val MAX_CACHED_ORDERS = 16
+
+    /** The size of the cells origins are rounded to for caching, roughly a kilometer. */
+    private const val ORIGIN_CELL_DEGREES = 0.01
+
+    private const val STOP_LIST_FILE_NAME = "stops.txt"
+
+    private val PLACE_FIELDS =
+      listOf(Place.Field.ID, Place.Field.NAME, Place.Field.LAT_LNG, Place.Field.TYPES)
+
+    private val readExecutor = Executors.newSingleThreadExecutor()
+
+    /** Returns the file that stop lists are read from, with one place ID per line. */
+    fun stopListFile(context: Context) = File(context.filesDir, STOP_LIST_FILE_NAME)
+
+    /**
+     * Reads the place IDs of the app's stop list on a background thread. Blank lines and lines
+     * starting with `#` are skipped. The task fails with a [java.io.FileNotFoundException] if there
+     * is no stop list.
+     */
+    fun readStopList(context: Context): Task<List<String>> {
+      val file = stopListFile(context)
+      return Tasks.call(readExecutor) {
+        file.readLines().map { it.trim() }.filter { it.isNotEmpty() && !it.startsWith("#") }
+      }
+    }
+
+    /** Reads the app's stop list and resolves its places with [resolvePlaces]. */
+    fun loadStopList(context: Context, placesClient: PlacesClient): Task<List<Place>> =
+      readStopList(context).onSuccessTask { placeIds ->
+        resolvePlaces(placesClient, placeIds.orEmpty())
+      }
+
+    /**
+     * Fetches the places with the given IDs concurrently, and completes with the places in the same
+     * order as [placeIds] once all of them have been fetched. The task fails as soon as any fetch
+     * fails.
+     */
+    fun resolvePlaces(placesClient: PlacesClient, placeIds: List<String>): Task<List<Place>> {
+      val fetches =
+        placeIds.map { placeId ->
+          placesClient.fetchPlace(FetchPlaceRequest.newInstance(placeId, PLACE_FIELDS))
+        }
+      return Tasks.whenAllSuccess<FetchPlaceResponse>(fetches).onSuccessTask { responses ->
+        Tasks.forResult(responses.orEmpty().map { it.place })
+      }
+    }
+
+    /**
+     * Converts a place into a [Waypoint], using its place ID unless it is a geocoded address or has
+     * no place ID.
+     *
+     * @throws UnsupportedPlaceIdException if the place ID can't be routed to.
+     */
+    fun toWaypoint(place: Place): Waypoint {
+      val latLng = place.latLng
+      val routeByLocation =
+        place.id == null || place.placeTypes?.contains(PlaceTypes.GEOCODE) == true
+      return if (routeByLocation && latLng != null) {
+        // Note: Setting LatLng destinations can result in poor routing quality/ETA calculation.
+        // Wherever possible you should use a Place ID to describe the destination accurately.
+        Waypoint.builder().setLatLng(latLng.latitude, latLng.longitude).build()
+      } else {
+        Waypoint.builder().setPlaceIdString(place.id).build()
+      }
+    }
+
+    /**
+     * Returns the indices of [stops] in the order of a short open tour starting at [origin].
+     *
+     * The tour is built greedily by always visiting the nearest unvisited stop, then improved by
+     * reversing sub-paths (2-opt) for as long as that shortens it.
+     */
+    fun shortestTour(origin: LatLng, stops: List<LatLng>): List<Int> {
+      val points = listOf(origin) + stops
+      val distances = distanceMatrix(points)
+
+      // Nearest-neighbor construction. Index 0 of the path is the origin.
+      val path = IntArray(points.size)
+      val visited = BooleanArray(points.size)
+      visited[0] = true
+      for (i in 1 until path.size) {
+        val previous = path[i - 1]
+        var nearest = -1
+        for (candidate in 1 until points.size) {
+          if (
+            !visited[candidate] &&
+              (nearest == -1 || distances[previous][candidate] < distances[previous][nearest])
+          ) {
+            nearest = candidate
+          }
+        }
+        path[i] = nearest
+        visited[nearest] = true
+      }
+
+      // 2-opt improvement of the open path, keeping the origin fixed at the start.
+      val last = path.size - 1
+      var improved = true
+      var passes = 0
+      while (improved && passes++ < MAX_TWO_OPT_PASSES) {
+        improved = false
+        for (i in 1 until last) {
+          for (k in i + 1..last) {
+            val before = distances[path[i - 1]][path[i]]
+            val after = distances[path[i - 1]][path[k]]
+            val tailBefore = if (k < last) distances[path[k]][path[k + 1]] else 0.0
+            val tailAfter = if (k < last) distances[path[i]][path[k + 1]] else 0.0
+            if (after + tailAfter < before + tailBefore - 1e-6) {
+              path.reverse(i, k + 1)
+              improved = true
+            }
+          }
+        }
+      }
+
+      return path.drop(1).map { it - 1 }
+    }
+
+    // Place IDs never contain commas, so they can't collide with the location keys.
+    private fun stopKey(stop: Place): String {
+      stop.id?.let {
+        return it
+      }
+      val latLng = requireNotNull(stop.latLng) { "Stops must have a location." }
+      return "${latLng.latitude},${latLng.longitude}"
+    }
+
+    /** Packs the indices of the cell containing [origin] into a single cache key. */
+    private fun originCell(origin: LatLng): Long {
+      val row = floor(origin.latitude / ORIGIN_CELL_DEGREES).toLong()
+      val column = floor(origin.longitude / ORIGIN_CELL_DEGREES).toLong()
+      return (row shl 32) or (column and 0xFFFFFFFFL)
+    }
+
+    private fun distanceMatrix(points: List<LatLng>): Array<DoubleArray> {
+      val distances = Array(points.size) { DoubleArray(points.size) }
+      for (i in points.indices) {
+        for (j in i + 1 until points.size) {
+          val distance = haversineMeters(points[i], points[j])
+          distances[i][j] = distance
+          distances[j][i] = distance
+        }
+      }
+      return distances
+    }
+
+    private fun haversineMeters(from: LatLng, to: LatLng): Double {
+      val fromLat = Math.toRadians(from.latitude)
+      val toLat = Math.toRadians(to.latitude)
+      val halfDeltaLat = (toLat - fromLat) / 2
+      val halfDeltaLng = Math.toRadians(to.longitude - from.longitude) / 2
+      val a =
+        sin(halfDeltaLat) * sin(halfDeltaLat) +
+          cos(fromLat) * cos(toLat) * sin(halfDeltaLng) * sin(halfDeltaLng)
+      return 2 * EARTH_RADIUS_METERS * asin(sqrt(a))
+    }
+  }
+}
@@ -27,18 +27,24 @@ import android.view.WindowManager
 import android.widget.Toast
 import androidx.appcompat.app.AppCompatActivity
 import androidx.fragment.app.Fragment
+import androidx.tracing.Trace
 import com.example.navigationapidemo.CustomizationPanelsDelegate.logDebugInfo
 import com.example.navigationapidemo.EdgeToEdgeUtil.EdgeToEdgeMarginConfig
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.navigation.ArrivalEvent
 import com.google.android.libraries.navigation.NavigationApi
 import com.google.android.libraries.navigation.NavigationApi.NavigatorListener
 import com.google.android.libraries.navigation.Navigator
 import com.google.android.libraries.navigation.Navigator.RouteStatus
-import com.google.android.libraries.navigation.SimulationOptions
 import com.google.android.libraries.navigation.SupportNavigationFragment
 import com.google.android.libraries.navigation.Waypoint
 import com.google.android.libraries.navigation.Waypoint.UnsupportedPlaceIdException
+import com.google.android.libraries.places.api.Places
 import com.google.android.libraries.places.api.model.Place
 import com.google.android.libraries.places.api.model.PlaceTypes
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
 import java.lang.Exception
 
 /**
@@ -49,16 +55,26 @@ class NavFragmentActivity : AppCompatActivity() {
   private var navigatorScope: InitializedNavScope? = null
   // TODO: Update to be lifecycle aware.
   private var pendingNavActions = mutableListOf<InitializedNavRunnable>()
-  private var arrivalListener: Navigator.ArrivalListener? = null
-  private var routeChangedListener: Navigator.RouteChangedListener? = null
 
   private lateinit var navFragment: SupportNavigationFragment
   private var navInfoDisplayFragment: Fragment? = null
+  private var guidanceLoadGenerator: GuidanceLoadGenerator? = null
+
+  // The stops of the current multi-stop trip that haven't been reached yet, in route order.
+  private var remainingStops = listOf<Place>()
+  private val multiStopRoutePlanner = MultiStopRoutePlanner()
+  private val placesClient by lazy { Places.createClient(this) }
 
   @SuppressLint("MissingPermission") // TODO: requestPermissions(...) in here or earlier
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
     setContentView(R.layout.activity_nav_fragment)
+    Trace.beginAsyncSection(NavigationMetrics.FIRST_MAP_FRAME_TRACE, /* cookie= */ 0)
+
+    // Serve navigation metrics on a loopback port, see NavigationMetrics.startLoopbackExport.
+    if (BuildConfig.DEBUG) {
+      NavigationMetrics.startLoopbackExport()
+    }
 
     // Margins are only set if the edge-to-edge mode is enabled, it's enabled by default for Android
     // V+ devices.
@@ -76,6 +92,9 @@ class NavFragmentActivity : AppCompatActivity() {
     // progress bar, whether to force night mode, etc.
     CustomizationPanelsDelegate.initializeCustomizationPanels(this)
     CustomizationPanelsDelegate.setUpNightModeSpinner(this, navFragment::setForceNightMode)
+    // Swap the cached day and night assets of the custom UI whenever the SDK switches modes, be it
+    // because of the spinner, the time of day, or a tunnel.
+    navFragment.addOnNightModeChangedListener { ThemeAssetCache.setNightMode(it.isNightModeOn) }
 
     // Ensure the screen stays on during nav.
     window.addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON)
@@ -153,6 +172,13 @@ class NavFragmentActivity : AppCompatActivity() {
     )
 
     withMapAsync {
+      // Reports the first fully rendered map frame, which shows up as "Fully drawn" in logcat
+      // and as a trace section measured by the macrobenchmarks in the :baselineprofile module.
+      map.setOnMapLoadedCallback {
+        Trace.endAsyncSection(NavigationMetrics.FIRST_MAP_FRAME_TRACE, /* cookie= */ 0)
+        reportFullyDrawn()
+      }
+
       CustomizationPanelsDelegate.setUpCameraPerspectiveSpinner(
         this@NavFragmentActivity,
         map::followMyLocation,
@@ -177,25 +203,44 @@ class NavFragmentActivity : AppCompatActivity() {
    */
   private fun registerNavigationListeners() {
     withNavigatorAsync {
-      arrivalListener =
-        Navigator.ArrivalListener { // Show an onscreen message
-          showToast("User has arrived at the destination!")
-
-          // Stop turn-by-turn guidance and return to TOP_DOWN perspective of the map
-          navigator.stopGuidance()
-
-          // Stop simulating vehicle movement.
-          if (BuildConfig.DEBUG) {
-            navigator.simulator.unsetUserLocation()
-          }
-        }
-      navigator.addArrivalListener(arrivalListener)
+      // The registry only holds the subscriber weakly and drops it when this activity is
+      // destroyed, so there is nothing to unregister in onDestroy().
+      NavigatorEventRegistry.forNavigator(navigator)
+        .subscribe(
+          this@NavFragmentActivity,
+          object : NavigatorEventRegistry.Subscriber {
+            override fun onArrival(arrivalEvent: ArrivalEvent) {
+              if (!arrivalEvent.isFinalDestination) {
+                // Move on to the next stop of a multi-stop trip.
+                showToast("User has arrived at a stop!")
+                remainingStops = remainingStops.drop(1)
+                navigator.continueToNextDestination()
+                navigator.startGuidance()
+                return
+              }
+
+              // Show an onscreen message
+              showToast("User has arrived at the destination!")
+              remainingStops = emptyList()
+              NavigationMetrics.onGuidanceStopped()
+              TripTelemetry.stop()
+
+              // Stop turn-by-turn guidance and return to TOP_DOWN perspective of the map
+              navigator.stopGuidance()
+
+              // Stop simulating vehicle movement.
+              if (BuildConfig.DEBUG) {
+                navigator.simulator.unsetUserLocation()
+              }
+            }
 
-      routeChangedListener =
-        Navigator.RouteChangedListener { // Show an onscreen message when the route changes
-          showToast("onRouteChanged: the driver's route changed")
-        }
-      navigator.addRouteChangedListener(routeChangedListener)
+            override fun onRouteChanged(coalescedCount: Int) {
+              // Show an onscreen message when the route changes
+              showToast("onRouteChanged: the driver's route changed")
+              replanRemainingStops()
+            }
+          },
+        )
     }
   }
 
@@ -220,44 +265,187 @@ class NavFragmentActivity : AppCompatActivity() {
         }
       }
 
+    navigateToWaypoint(waypoint, stops = listOf(place))
+  }
+
+  /**
+   * Requests directions from the user's current location to [waypoint]. [stops] are the places the
+   * waypoint was built from, which [addStop] plans the trip through along with the new stop.
+   */
+  private fun navigateToWaypoint(waypoint: Waypoint?, stops: List<Place> = emptyList()) {
     withNavigatorAsync {
+      remainingStops = stops
       val pendingRoute = navigator.setDestination(waypoint)
 
       // Set an action to perform when a route is determined to the destination
-      pendingRoute.setOnResultListener { code ->
-        when (code) {
-          RouteStatus.OK -> {
-            // Hide the toolbar to maximize the navigation UI
-            actionBar?.hide()
-
-            // Enable voice audio guidance (through the device speaker)
-            navigator.setAudioGuidance(Navigator.AudioGuidance.VOICE_ALERTS_AND_GUIDANCE)
-
-            // Simulate vehicle progress along the route (for demo/debug builds)
-            if (BuildConfig.DEBUG) {
-              navigator.simulator.simulateLocationsAlongExistingRoute(
-                SimulationOptions().speedMultiplier(5f)
-              )
-            }
+      pendingRoute.setOnResultListener { code -> onRouteResult(code) }
+    }
+  }
 
-            // Start turn-by-turn guidance along the current route
-            navigator.startGuidance()
-          }
-          RouteStatus.ROUTE_CANCELED -> {
-            // Return to top-down perspective
-            showToast("Route guidance cancelled.")
-          }
-          RouteStatus.NO_ROUTE_FOUND,
-          RouteStatus.NETWORK_ERROR -> {
-            // TODO: Add logic to handle when a route could not be determined
-            showToast("Error starting guidance: $code")
+  /**
+   * Navigates to the known site closest to the user's current location, looked up in the offline
+   * [SiteIndex] without any network request.
+   *
+   * This method is referenced by the "Go to Nearest Site" item in menu_default.xml
+   */
+  fun navigateToNearestSite(v: MenuItem?): Boolean {
+    SiteIndex.load(this) { siteIndex ->
+      if (siteIndex == null) {
+        showToast("No site list found. Add one at ${SiteIndex.importFile(this)}")
+        return@load
+      }
+      withMapAsync {
+        val location = map.myLocation
+        if (location == null) {
+          showToast("The current location is not known yet.")
+          return@withMapAsync
+        }
+        val site = siteIndex.nearest(LatLng(location.latitude, location.longitude))
+        if (site == null) {
+          showToast("The site list is empty.")
+          return@withMapAsync
+        }
+        showToast("Navigating to ${site.name}")
+        // Stops added later are planned together with the site.
+        navigateToWaypoint(site.toWaypoint(), stops = listOf(site.toPlace()))
+      }
+    }
+    return true
+  }
+
+  /**
+   * Adds a stop (provided by the Google Places API) to the current trip, and routes through all of
+   * the remaining stops in the shortest order found by [MultiStopRoutePlanner].
+   */
+  private fun addStop(place: Place) {
+    withMapAsync {
+      // If the current location isn't known yet, the trip starts from the newly added stop.
+      val origin =
+        map.myLocation?.let { LatLng(it.latitude, it.longitude) }
+          ?: place.latLng
+          ?: return@withMapAsync
+      val orderedStops = multiStopRoutePlanner.orderStops(origin, remainingStops + place)
+      setStops(orderedStops) { code ->
+        if (navigator.isGuidanceRunning) {
+          // The trip is already under way, so guidance and the simulation carry on along the new
+          // route instead of being started again.
+          if (code != RouteStatus.OK) {
+            showToast("Error adding the stop: $code")
           }
-          else -> showToast("Error starting guidance: $code")
+        } else {
+          onRouteResult(code)
+        }
+      }
+    }
+  }
+
+  /**
+   * Plans a trip through every stop of the app's stop list, such as a delivery driver's shift. The
+   * stops are resolved concurrently, ordered once and submitted in a single
+   * [Navigator.setDestinations] call.
+   *
+   * This method is referenced by the "Route Through Stop List" item in menu_default.xml
+   */
+  fun navigateToStopList(v: MenuItem?): Boolean {
+    MultiStopRoutePlanner.loadStopList(this, placesClient)
+      .addOnSuccessListener(this) { stops -> navigateToStops(stops) }
+      .addOnFailureListener(this) { e ->
+        if (e is FileNotFoundException) {
+          showToast("No stop list found. Add one at ${MultiStopRoutePlanner.stopListFile(this)}")
+        } else {
+          showToast("Could not look up the stops: ${e.message}")
+        }
+      }
+    return true
+  }
+
+  /** Routes through [stops] in the shortest order found by [MultiStopRoutePlanner]. */
+  private fun navigateToStops(stops: List<Place>) {
+    if (stops.isEmpty()) {
+      showToast("The stop list is empty.")
+      return
+    }
+    withMapAsync {
+      // If the current location isn't known yet, the trip starts from the first stop of the list.
+      val origin =
+        map.myLocation?.let { LatLng(it.latitude, it.longitude) }
+          ?: stops.first().latLng
+          ?: return@withMapAsync
+      setStops(multiStopRoutePlanner.orderStops(origin, stops)) { code -> onRouteResult(code) }
+    }
+  }
+
+  /**
+   * Orders the remaining stops of a multi-stop trip again from the current location once the route
+   * has changed, e.g. because the driver left it, and resubmits them if the order changed.
+   */
+  private fun replanRemainingStops() {
+    if (remainingStops.size < 2) {
+      return
+    }
+    withMapAsync {
+      val location = map.myLocation ?: return@withMapAsync
+      val orderedStops =
+        multiStopRoutePlanner.orderStops(
+          LatLng(location.latitude, location.longitude),
+          remainingStops,
+        )
+      if (orderedStops == remainingStops) {
+        return@withMapAsync
+      }
+      // Guidance is already running, so only report routing failures.
+      setStops(orderedStops) { code ->
+        if (code != RouteStatus.OK) {
+          showToast("Error re-planning the remaining stops: $code")
         }
       }
     }
   }
 
+  /** Replaces the trip's destinations with [orderedStops], visited in order. */
+  private fun setStops(
+    orderedStops: List<Place>,
+    onResult: InitializedNavScope.(RouteStatus) -> Unit,
+  ) {
+    val waypoints =
+      try {
+        orderedStops.map { MultiStopRoutePlanner.toWaypoint(it) }
+      } catch (e: UnsupportedPlaceIdException) {
+        showToast("Place ID was unsupported.")
+        return
+      }
+    remainingStops = orderedStops
+
+    withNavigatorAsync {
+      // All stops are submitted at once, so the Navigator computes a single route through them.
+      navigator.setDestinations(waypoints).setOnResultListener { code -> onResult(code) }
+    }
+  }
+
+  /** Starts guidance once a route to the destination(s) has been determined. */
+  private fun InitializedNavScope.onRouteResult(code: RouteStatus) {
+    when (code) {
+      RouteStatus.OK -> {
+        RouteStartPipeline.start(this@NavFragmentActivity, navigator) {
+          // Hide the toolbar to maximize the navigation UI
+          actionBar?.hide()
+        }
+        ThemeAssetCache.preload(this@NavFragmentActivity)
+        TripTelemetry.start(application)
+      }
+      RouteStatus.ROUTE_CANCELED -> {
+        // Return to top-down perspective
+        showToast("Route guidance cancelled.")
+      }
+      RouteStatus.NO_ROUTE_FOUND,
+      RouteStatus.NETWORK_ERROR -> {
+        // TODO: Add logic to handle when a route could not be determined
+        showToast("Error starting guidance: $code")
+      }
+      else -> showToast("Error starting guidance: $code")
+    }
+  }
+
   /**
    * Uses the Google Places API Place Picker to choose a destination to navigate to.
    *
@@ -275,6 +463,23 @@ class NavFragmentActivity : AppCompatActivity() {
     return true
   }
 
+  /**
+   * Uses the Google Places API Place Picker to choose a stop to add to the current trip.
+   *
+   * This method is referenced by the "Add Stop" item in menu_default.xml
+   */
+  fun showPlacePickerForStop(v: MenuItem?): Boolean {
+    try {
+      startActivityForResult(Intent(this, PlacePickerActivity::class.java), ADD_STOP_REQUEST)
+    } catch (e: Exception) {
+      showToast(
+        "Could not display Place Picker. Check your API key has the Google" + "Places API enabled."
+      )
+      Log.e(TAG, Log.getStackTraceString(e))
+    }
+    return true
+  }
+
   /** If the Place Picker activity returns a destination, starts navigation to that place. */
   override fun onActivityResult(requestCode: Int, resultCode: Int, data: Intent?) {
     super.onActivityResult(requestCode, resultCode, data)
@@ -284,6 +489,9 @@ class NavFragmentActivity : AppCompatActivity() {
         navigateToPlace(place)
       }
     }
+    if (requestCode == ADD_STOP_REQUEST && resultCode == RESULT_OK) {
+      data?.let { addStop(PlacePickerActivity.getPlace(it)) }
+    }
   }
 
   /**
@@ -324,6 +532,18 @@ class NavFragmentActivity : AppCompatActivity() {
     }
   }
 
+  /** Toggles the guidance load test, which replays simulated trips back to back. */
+  fun toggleGuidanceLoadTest(unused: View?) {
+    withNavigatorAsync {
+      guidanceLoadGenerator =
+        CustomizationPanelsDelegate.toggleGuidanceLoadGenerator(
+          this@NavFragmentActivity,
+          navigator,
+          guidanceLoadGenerator,
+        )
+    }
+  }
+
   /** Moves the position of the camera to hover over Melbourne. */
   fun moveCameraToMelbourne(unused: View?) {
     withMapAsync {
@@ -339,10 +559,26 @@ class NavFragmentActivity : AppCompatActivity() {
     )
   }
 
-  /** Logs some debug information to the logcat from the Navigator, upon user request. */
+  /**
+   * Records the trip state from the Navigator into [NavigationMetrics], logs it, and exports the
+   * metrics to a file, upon user request.
+   */
   fun logDebugInfo(unused: View?) {
-    withNavigatorAsync { navigator.logDebugInfo() }
-    showToast("Check the logcat for some information about your trip!")
+    withNavigatorAsync {
+      navigator.logDebugInfo()
+      exportNavigationMetrics()
+    }
+  }
+
+  // Writes the navigation metrics to a file that can be pulled with `adb shell run-as`.
+  private fun exportNavigationMetrics() {
+    val file = File(filesDir, METRICS_FILE_NAME)
+    try {
+      NavigationMetrics.exportToFile(file)
+      showToast("Navigation metrics written to $file")
+    } catch (e: IOException) {
+      showToast("Could not write navigation metrics: ${e.message}")
+    }
   }
 
   private fun showToast(errorMessage: String) {
@@ -358,13 +594,9 @@ class NavFragmentActivity : AppCompatActivity() {
   override fun onDestroy() {
     // If using the Simulator, make sure the user location is reset:
     withNavigatorAsync {
-      // Unregister event listeners to avoid memory leaks.
-      if (arrivalListener != null) {
-        navigator.removeArrivalListener(arrivalListener)
-      }
-      if (routeChangedListener != null) {
-        navigator.removeRouteChangedListener(routeChangedListener)
-      }
+      guidanceLoadGenerator?.stop()
+      NavigationMetrics.onGuidanceStopped()
+      TripTelemetry.stop()
 
       navigator.simulator.unsetUserLocation()
       navigator.cleanup()
@@ -375,5 +607,7 @@ class NavFragmentActivity : AppCompatActivity() {
   companion object {
     const val TAG = "NavFragmentActivity"
     const val PLACE_PICKER_REQUEST = 1
+    const val ADD_STOP_REQUEST = 2
+    const val METRICS_FILE_NAME = "navigation_metrics.json"
   }
 }
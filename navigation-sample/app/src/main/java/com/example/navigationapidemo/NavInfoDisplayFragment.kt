@@ -16,7 +16,6 @@
 
 package com.example.navigationapidemo
 
-import android.graphics.Color
 import android.os.Bundle
 import android.util.Log
 import android.view.LayoutInflater
@@ -46,6 +45,16 @@ class NavInfoDisplayFragment : Fragment() {
   private var selectedStepNumber = -1
   private var headerNavInfo: NavInfo? = null
   private var showingCurrentStep = true
+  // Always holds a value, since the cache starts out with assets that are loaded on demand.
+  private var themeAssets = ThemeAssetCache.assets.value!!
+
+  /** The header color for the current step, blue by day. */
+  private val currentStepColor: Int
+    get() = themeAssets.currentStepColor
+
+  /** The header color for step previews, blue-grey by day. */
+  private val stepPreviewColor: Int
+    get() = themeAssets.stepPreviewColor
 
   /** Returns whether the displayed step is the current step rather than a future step preview. */
   private val isDisplayedStepCurrentStep: Boolean
@@ -84,6 +93,15 @@ class NavInfoDisplayFragment : Fragment() {
     }
 
     NavInfoReceivingService.navInfoLiveData.observe(this.viewLifecycleOwner, navInfoObserver)
+
+    // Switching between the day and night assets only swaps cached references, so the shown step
+    // can simply be redrawn.
+    ThemeAssetCache.assets.observe(this.viewLifecycleOwner) { assets ->
+      if (assets !== themeAssets) {
+        themeAssets = assets
+        headerNavInfo?.let { showNavInfo(it) }
+      }
+    }
   }
 
   private fun showNavInfo(navInfo: NavInfo) {
@@ -204,7 +222,7 @@ class NavInfoDisplayFragment : Fragment() {
       selectedStepNumber > currentStepNumber
     displayHeader.findViewById<View>(R.id.btn_current_step).isEnabled = !showingCurrentStep
     displayHeader.setBackgroundColor(
-      if (showingCurrentStep) CURRENT_STEP_COLOR else STEP_PREVIEW_COLOR
+      if (showingCurrentStep) currentStepColor else stepPreviewColor
     )
     displayHeader.visibility = View.VISIBLE
   }
@@ -261,7 +279,7 @@ class NavInfoDisplayFragment : Fragment() {
     displayHeader
       .findViewById<ImageView>(R.id.iv_maneuver_icon)
       .setImageDrawable(
-        requireActivity().resources.getDrawable(ManeuverUtils.getManeuverIconResId(stepInfo))
+        themeAssets.getManeuverIcon(requireContext(), ManeuverUtils.getManeuverIconResId(stepInfo))
       )
   }
 
@@ -371,7 +389,7 @@ class NavInfoDisplayFragment : Fragment() {
     displayHeader.findViewById<View>(R.id.btn_current_step).isEnabled = false
     showingCurrentStep = true
     selectedStepNumber = -1
-    displayHeader.setBackgroundColor(CURRENT_STEP_COLOR)
+    displayHeader.setBackgroundColor(currentStepColor)
   }
 
   private fun showAwaitingNavigationText() {
@@ -412,11 +430,5 @@ class NavInfoDisplayFragment : Fragment() {
         R.id.tv_final_destination_eta,
         R.id.tv_final_destination_remaining_distance,
       )
-
-    /** Set the header to blue for the current step. */
-    private val CURRENT_STEP_COLOR = Color.parseColor("#4285F4")
-
-    /** Set the header to blue-grey for step previews. */
-    private val STEP_PREVIEW_COLOR = Color.parseColor("#617BA6")
   }
 }
@@ -51,6 +51,7 @@ class NavInfoReceivingService : Service() {
   ) : Handler(looper) {
     override fun handleMessage(msg: Message) {
       if (TurnByTurnManager.MSG_NAV_INFO == msg.what) {
+        NavigationMetrics.increment(NavigationMetrics.Counter.FORWARDED_NAV_INFO_MESSAGES)
         // Read the nav info from the message data,
         // and post the value (if it exists) to LiveData to be displayed in the nav info header.
         turnByTurnManager.readNavInfoFromBundle(msg.data).let { navInfo ->
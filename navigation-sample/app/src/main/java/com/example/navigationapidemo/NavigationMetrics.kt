@@ -0,0 +1,233 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.SystemClock
+import android.util.Log
+import android.view.Choreographer
+import java.io.File
+import java.io.IOException
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import org.json.JSONObject
+
+/**
+ * A process-wide registry of metrics about navigation sessions.
+ *
+ * Every metric is a slot in an [AtomicLongArray] indexed by [Counter] or [Gauge], so recording a
+ * value is a single lock-free atomic operation that allocates nothing, and is cheap enough to do
+ * from any thread during guidance. Frame statistics are only sampled while guidance is active.
+ *
+ * [snapshot] captures all values as JSON, which can be written to a file with [exportToFile], or
+ * served on a loopback HTTP port with [startLoopbackExport] (for example, after
+ * `adb forward tcp:8765 tcp:8765`, run `curl localhost:8765`).
+ */
+object NavigationMetrics {
+  /** Metrics that only ever increase. */
+  enum class Counter {
+    ROUTE_CHANGES,
+    ARRIVALS,
+    GUIDANCE_SESSIONS,
+    GUIDANCE_MILLIS,
+    FORWARDED_NAV_INFO_MESSAGES,
+    CAMERA_FOLLOW_STARTED,
+    CAMERA_FOLLOW_STOPPED,
+    CAMERA_FOLLOW_TRANSITIONS,
+    CAMERA_FOLLOW_CALLS_SUPPRESSED,
+    FRAMES,
+    DROPPED_FRAMES,
+  }
+
+  /** Metrics that hold the latest recorded value. */
+  enum class Gauge {
+    REMAINING_METERS,
+    REMAINING_SECONDS,
+    DELAY_SEVERITY,
+    TRAVELED_ROUTE_POINTS,
+    CURRENT_SEGMENT_POINTS,
+    MAX_FRAME_MILLIS,
+    ROUTE_START_MILLIS,
+  }
+
+  /**
+   * The name of the trace section from the creation of a navigation activity to its first fully
+   * rendered map frame.
+   */
+  const val FIRST_MAP_FRAME_TRACE = "FirstMapFrame"
+
+  private const val TAG = "NavigationMetrics"
+  private const val DEFAULT_LOOPBACK_PORT = 8765
+
+  /** How long the loopback server waits on a client before dropping it. */
+  private const val LOOPBACK_CLIENT_TIMEOUT_MILLIS = 5_000
+
+  /** Frames that take longer than 1.5 vsync intervals at 60 fps are counted as dropped. */
+  private const val DROPPED_FRAME_NANOS = 25_000_000L
+
+  private val counters = AtomicLongArray(Counter.values().size)
+  private val gauges = AtomicLongArray(Gauge.values().size)
+  private val guidanceStartMillis = AtomicLong()
+  private val loopbackExportStarted = AtomicBoolean()
+
+  // Only touched on the main thread, which the Choreographer callback runs on.
+  private var lastFrameTimeNanos = 0L
+  private val frameSampler =
+    object : Choreographer.FrameCallback {
+      override fun doFrame(frameTimeNanos: Long) {
+        if (guidanceStartMillis.get() == 0L) {
+          lastFrameTimeNanos = 0L
+          return
+        }
+        if (lastFrameTimeNanos != 0L) {
+          val frameNanos = frameTimeNanos - lastFrameTimeNanos
+          increment(Counter.FRAMES)
+          if (frameNanos > DROPPED_FRAME_NANOS) {
+            increment(Counter.DROPPED_FRAMES)
+          }
+          val frameMillis = frameNanos / 1_000_000
+          if (frameMillis > get(Gauge.MAX_FRAME_MILLIS)) {
+            set(Gauge.MAX_FRAME_MILLIS, frameMillis)
+          }
+        }
+        lastFrameTimeNanos = frameTimeNanos
+        Choreographer.getInstance().postFrameCallback(this)
+      }
+    }
+
+  fun increment(counter: Counter, delta: Long = 1) {
+    counters.addAndGet(counter.ordinal, delta)
+  }
+
+  fun get(counter: Counter): Long = counters.get(counter.ordinal)
+
+  fun set(gauge: Gauge, value: Long) {
+    gauges.set(gauge.ordinal, value)
+  }
+
+  fun get(gauge: Gauge): Long = gauges.get(gauge.ordinal)
+
+  /**
+   * Marks the start of a guidance session, and starts sampling frame statistics. Has no effect if a
+   * session is already in progress. Must be called on the main thread.
+   */
+  fun onGuidanceStarted() {
+    if (guidanceStartMillis.compareAndSet(0L, SystemClock.elapsedRealtime())) {
+      increment(Counter.GUIDANCE_SESSIONS)
+      lastFrameTimeNanos = 0L
+      // The sampler of a previous session stays posted until its next frame, so remove it rather
+      // than sampling each frame twice.
+      Choreographer.getInstance().removeFrameCallback(frameSampler)
+      Choreographer.getInstance().postFrameCallback(frameSampler)
+    }
+  }
+
+  /** Marks the end of the current guidance session, if any, and stops sampling frames. */
+  fun onGuidanceStopped() {
+    val startMillis = guidanceStartMillis.getAndSet(0L)
+    if (startMillis != 0L) {
+      increment(Counter.GUIDANCE_MILLIS, SystemClock.elapsedRealtime() - startMillis)
+    }
+  }
+
+  /** Returns the current value of every metric as a JSON object. */
+  fun snapshot(): JSONObject {
+    val counterValues = JSONObject()
+    for (counter in Counter.values()) {
+      counterValues.put(counter.name.lowercase(), get(counter))
+    }
+    // Include the time spent in the session that is still in progress.
+    val startMillis = guidanceStartMillis.get()
+    if (startMillis != 0L) {
+      counterValues.put(
+        Counter.GUIDANCE_MILLIS.name.lowercase(),
+        get(Counter.GUIDANCE_MILLIS) + SystemClock.elapsedRealtime() - startMillis,
+      )
+    }
+    val gaugeValues = JSONObject()
+    for (gauge in Gauge.values()) {
+      gaugeValues.put(gauge.name.lowercase(), get(gauge))
+    }
+    return JSONObject()
+      .put("timestamp_millis", System.currentTimeMillis())
+      .put("guidance_active", startMillis != 0L)
+      .put("counters", counterValues)
+      .put("gauges", gaugeValues)
+  }
+
+  /** Writes a [snapshot] to [file], replacing its previous content. */
+  @Throws(IOException::class)
+  fun exportToFile(file: File) {
+    file.writeText(snapshot().toString(/* indentSpaces= */ 2))
+  }
+
+  /**
+   * Serves a [snapshot] to every HTTP request on the given loopback port, from a background
+   * thread. Only the device itself (or `adb forward`) can reach the port. Clients are served one at
+   * a time, and dropped if they send nothing for 5 seconds. Only call this in debug builds; later
+   * calls have no effect.
+   */
+  fun startLoopbackExport(port: Int = DEFAULT_LOOPBACK_PORT) {
+    if (!loopbackExportStarted.compareAndSet(false, true)) {
+      return
+    }
+    val thread =
+      Thread(
+        {
+          try {
+            ServerSocket(port, /* backlog= */ 1, InetAddress.getLoopbackAddress()).use { server ->
+              while (true) {
+                val socket = server.accept()
+                // A client that fails or stalls is dropped, and the next one is served.
+                try {
+                  socket.use { serveSnapshot(it) }
+                } catch (e: IOException) {
+                  Log.w(TAG, "Dropped a loopback metrics client", e)
+                }
+              }
+            }
+          } catch (e: IOException) {
+            Log.w(TAG, "Loopback metrics export stopped", e)
+            loopbackExportStarted.set(false)
+          }
+        },
+        "NavigationMetricsExport",
+      )
+    thread.isDaemon = true
+    thread.start()
+  }
+
+  @Throws(IOException::class)
+  private fun serveSnapshot(socket: Socket) {
+    socket.soTimeout = LOOPBACK_CLIENT_TIMEOUT_MILLIS
+    // Read and ignore the request headers, whatever the requested path is.
+    val request = socket.getInputStream().bufferedReader(Charsets.US_ASCII)
+    while (!request.readLine().isNullOrEmpty()) {}
+    val body = snapshot().toString().toByteArray(Charsets.UTF_8)
+    val header =
+      "HTTP/1.0 200 OK\r\nContent-Type: application/json\r\n" +
+        "Content-Length: ${body.size}\r\n\r\n"
+    socket.getOutputStream().apply {
+      write(header.toByteArray(Charsets.US_ASCII))
+      write(body)
+      flush()
+    }
+  }
+}
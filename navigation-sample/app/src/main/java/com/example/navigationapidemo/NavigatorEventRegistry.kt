@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.Looper
+import android.util.Log
+import android.view.Choreographer
+import androidx.annotation.MainThread
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleEventObserver
+import androidx.lifecycle.LifecycleOwner
+import com.google.android.libraries.navigation.ArrivalEvent
+import com.google.android.libraries.navigation.Navigator
+import java.lang.ref.WeakReference
+
+/**
+ * Fans out [Navigator] events to any number of subscribers through a single pair of Navigator
+ * listeners.
+ *
+ * Subscribers are bound to a [LifecycleOwner] and are unsubscribed automatically when it is
+ * destroyed. The registry only holds them through weak references, so the Navigator's listener list
+ * never keeps an activity alive. Once the last subscriber is gone, the registry removes its own
+ * listeners from the Navigator.
+ *
+ * Events are not delivered on the callback thread. Instead they are queued and dispatched together
+ * on the next main-thread frame. Bursts of route changes, e.g. while the driver is being rerouted,
+ * are coalesced into a single [Subscriber.onRouteChanged] call per frame. Arrivals are never
+ * coalesced.
+ *
+ * Dispatch can be suspended with [suspendDispatch], e.g. while [GuidanceLoadGenerator] drives
+ * synthetic trips that subscribers must not act on. Events reported while it is suspended are
+ * dropped and not counted in [NavigationMetrics].
+ */
+class NavigatorEventRegistry private constructor(private val navigator: Navigator) {
+  /** Receives Navigator events on the main thread. */
+  interface Subscriber {
+    /** Called for every arrival at a waypoint. */
+    fun onArrival(arrivalEvent: ArrivalEvent) {}
+
+    /**
+     * Called at most once per frame when the route has changed.
+     *
+     * @param coalescedCount the number of route changes reported by the Navigator since the
+     *   previous call.
+     */
+    fun onRouteChanged(coalescedCount: Int) {}
+  }
+
+  private val subscribers = mutableListOf<WeakReference<Subscriber>>()
+  private val choreographer = Choreographer.getInstance()
+  private val lock = Any()
+  private val pendingArrivals = mutableListOf<ArrivalEvent>()
+  private var pendingRouteChanges = 0
+  private var dispatchScheduled = false
+  private var listenersRegistered = false
+
+  private val arrivalListener =
+    Navigator.ArrivalListener { arrivalEvent ->
+      if (suspendCount > 0) {
+        return@ArrivalListener
+      }
+      NavigationMetrics.increment(NavigationMetrics.Counter.ARRIVALS)
+      synchronized(lock) {
+        pendingArrivals.add(arrivalEvent)
+        scheduleDispatchLocked()
+      }
+    }
+
+  private val routeChangedListener =
+    Navigator.RouteChangedListener {
+      if (suspendCount > 0) {
+        return@RouteChangedListener
+      }
+      // Counted before coalescing, so every route change is recorded.
+      NavigationMetrics.increment(NavigationMetrics.Counter.ROUTE_CHANGES)
+      synchronized(lock) {
+        pendingRouteChanges++
+        scheduleDispatchLocked()
+      }
+    }
+
+  private val dispatchFrameCallback = Choreographer.FrameCallback { dispatchPendingEvents() }
+
+  /**
+   * Delivers Navigator events to [subscriber] until [owner] is destroyed, or until [unsubscribe] is
+   * called.
+   */
+  @MainThread
+  fun subscribe(owner: LifecycleOwner, subscriber: Subscriber) {
+    checkMainThread()
+    if (owner.lifecycle.currentState == Lifecycle.State.DESTROYED) {
+      return
+    }
+    subscribers.add(WeakReference(subscriber))
+    if (!listenersRegistered) {
+      navigator.addArrivalListener(arrivalListener)
+      navigator.addRouteChangedListener(routeChangedListener)
+      listenersRegistered = true
+    }
+    owner.lifecycle.addObserver(
+      LifecycleEventObserver { _, event ->
+        if (event == Lifecycle.Event.ON_DESTROY) {
+          unsubscribe(subscriber)
+        }
+      }
+    )
+  }
+
+  /** Stops delivering Navigator events to [subscriber]. */
+  @MainThread
+  fun unsubscribe(subscriber: Subscriber) {
+    checkMainThread()
+    subscribers.removeAll { it.get().let { s -> s == null || s === subscriber } }
+    if (subscribers.isEmpty()) {
+      release()
+    }
+  }
+
+  private fun release() {
+    if (listenersRegistered) {
+      navigator.removeArrivalListener(arrivalListener)
+      navigator.removeRouteChangedListener(routeChangedListener)
+      listenersRegistered = false
+    }
+    synchronized(lock) {
+      pendingArrivals.clear()
+      pendingRouteChanges = 0
+      dispatchScheduled = false
+    }
+    choreographer.removeFrameCallback(dispatchFrameCallback)
+    if (instance === this) {
+      instance = null
+    }
+  }
+
+  private fun scheduleDispatchLocked() {
+    if (!dispatchScheduled) {
+      dispatchScheduled = true
+      // Choreographer callbacks run on the thread the Choreographer belongs to, which is the main
+      // thread, whichever thread the event was reported on.
+      choreographer.postFrameCallback(dispatchFrameCallback)
+    }
+  }
+
+  private fun dispatchPendingEvents() {
+    val arrivals: List<ArrivalEvent>
+    val routeChanges: Int
+    synchronized(lock) {
+      arrivals = pendingArrivals.toList()
+      routeChanges = pendingRouteChanges
+      pendingArrivals.clear()
+      pendingRouteChanges = 0
+      dispatchScheduled = false
+    }
+    if (routeChanges > 1) {
+      Log.d(TAG, "Coalesced $routeChanges route changes into one dispatch")
+    }
+
+    subscribers.removeAll { it.get() == null }
+    // Subscribers may unsubscribe while events are being delivered, so iterate over a copy.
+    for (subscriber in subscribers.mapNotNull { it.get() }) {
+      for (arrivalEvent in arrivals) {
+        subscriber.onArrival(arrivalEvent)
+      }
+      if (routeChanges > 0) {
+        subscriber.onRouteChanged(routeChanges)
+      }
+    }
+  }
+
+  companion object {
+    private const val TAG = "NavigatorEventRegistry"
+
+    // Only the registry of the current Navigator is kept, and only while it has subscribers.
+    private var instance: NavigatorEventRegistry? = null
+
+    // Only changed on the main thread, but read by the Navigator listeners on any thread.
+    @Volatile private var suspendCount = 0
+
+    /**
+     * Drops the events of every Navigator until [resumeDispatch] has been called as many times as
+     * this method.
+     */
+    @MainThread
+    fun suspendDispatch() {
+      checkMainThread()
+      suspendCount++
+    }
+
+    /** Undoes one call to [suspendDispatch]. */
+    @MainThread
+    fun resumeDispatch() {
+      checkMainThread()
+      check(suspendCount > 0) { "Dispatch is not suspended." }
+      suspendCount--
+    }
+
+    /** Returns the registry that dispatches the events of [navigator]. */
+    @MainThread
+    fun forNavigator(navigator: Navigator): NavigatorEventRegistry {
+      checkMainThread()
+      val current = instance
+      if (current != null && current.navigator === navigator) {
+        return current
+      }
+      return NavigatorEventRegistry(navigator).also { instance = it }
+    }
+
+    private fun checkMainThread() {
+      check(Looper.myLooper() == Looper.getMainLooper()) {
+        "NavigatorEventRegistry must be used on the main thread."
+      }
+    }
+  }
+}
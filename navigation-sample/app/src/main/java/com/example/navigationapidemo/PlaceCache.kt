@@ -0,0 +1,214 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.content.Context
+import android.os.Handler
+import android.os.Looper
+import android.util.AtomicFile
+import android.util.Log
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.places.api.model.Place
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * Remembers the places the user picked, so repeat destinations such as depots or frequent customers
+ * can be chosen again without a Places API round trip.
+ *
+ * Places are kept in an in-memory LRU map keyed by place ID, bounded to [capacity] entries, and
+ * persisted to a compact binary file so they survive restarts. Only the fields requested by
+ * [PlacePickerActivity] (ID, name, location and types) are stored, which is everything needed to
+ * build a [com.google.android.libraries.navigation.Waypoint].
+ *
+ * Disk I/O happens on [ioExecutor], a background thread by default. All other methods are safe to
+ * call from any thread.
+ */
+class PlaceCache
+internal constructor(
+  private val file: AtomicFile,
+  private val capacity: Int,
+  private val ioExecutor: Executor = Executors.newSingleThreadExecutor(),
+) {
+  private val places =
+    object : LinkedHashMap<String, Place>(capacity, 0.75f, /* accessOrder= */ true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Place>?) =
+        size > capacity
+    }
+  private val mainHandler = Handler(Looper.getMainLooper())
+  @Volatile private var loaded = false
+
+  /**
+   * Loads the persisted places if that hasn't happened yet, and then invokes [onLoaded] on the main
+   * thread.
+   */
+  fun load(onLoaded: () -> Unit) {
+    if (loaded) {
+      mainHandler.post(onLoaded)
+      return
+    }
+    ioExecutor.execute {
+      loadOnIoThread()
+      mainHandler.post(onLoaded)
+    }
+  }
+
+  /** Returns the cached place with the given ID, or null if it isn't cached. */
+  fun get(placeId: String): Place? = synchronized(places) { places[placeId] }
+
+  /**
+   * Returns the cached places whose name, or any word of it, starts with [prefix], most recently
+   * used first. An empty prefix returns every cached place.
+   */
+  fun search(prefix: String): List<Place> {
+    val normalizedPrefix = prefix.trim().lowercase(Locale.getDefault())
+    val matches =
+      synchronized(places) {
+        places.values.filter { place ->
+          val name = place.name?.lowercase(Locale.getDefault()) ?: return@filter false
+          normalizedPrefix.isEmpty() ||
+            name.startsWith(normalizedPrefix) ||
+            name.split(' ').any { it.startsWith(normalizedPrefix) }
+        }
+      }
+    return matches.asReversed()
+  }
+
+  /** Adds [place] to the cache, or marks it as the most recently used one, and persists it. */
+  fun put(place: Place) {
+    val placeId = place.id ?: return
+    synchronized(places) { places[placeId] = copyCachedFields(place) }
+    ioExecutor.execute {
+      // The persisted places are merged in first, so writing the snapshot never drops them.
+      loadOnIoThread()
+      writePlaces(synchronized(places) { places.values.toList() })
+    }
+  }
+
+  private fun loadOnIoThread() {
+    if (loaded) {
+      return
+    }
+    val persisted = readPlaces()
+    synchronized(places) {
+      // Places picked before loading finished are more recent, so they are put back last.
+      val picked = places.values.toList()
+      places.clear()
+      persisted.forEach { places[it.id!!] = it }
+      picked.forEach { places[it.id!!] = it }
+    }
+    loaded = true
+  }
+
+  private fun readPlaces(): List<Place> {
+    try {
+      DataInputStream(file.openRead().buffered()).use { input ->
+        if (input.readInt() != FORMAT_VERSION) {
+          return emptyList()
+        }
+        return List(input.readInt()) {
+          val builder = Place.builder().setId(input.readUTF())
+          if (input.readBoolean()) {
+            builder.setName(input.readUTF())
+          }
+          if (input.readBoolean()) {
+            builder.setLatLng(LatLng(input.readDouble(), input.readDouble()))
+          }
+          builder.setPlaceTypes(List(input.readInt()) { input.readUTF() }).build()
+        }
+      }
+    } catch (e: FileNotFoundException) {
+      return emptyList()
+    } catch (e: IOException) {
+      Log.w(TAG, "Discarding unreadable place cache", e)
+      return emptyList()
+    }
+  }
+
+  // Places are written least recently used first, so reading them back restores the LRU order.
+  private fun writePlaces(snapshot: List<Place>) {
+    val stream =
+      try {
+        file.startWrite()
+      } catch (e: IOException) {
+        Log.w(TAG, "Could not persist the place cache", e)
+        return
+      }
+    try {
+      val output = DataOutputStream(stream.buffered())
+      output.writeInt(FORMAT_VERSION)
+      output.writeInt(snapshot.size)
+      for (place in snapshot) {
+        output.writeUTF(place.id!!)
+        val name = place.name
+        output.writeBoolean(name != null)
+        if (name != null) {
+          output.writeUTF(name)
+        }
+        val latLng = place.latLng
+        output.writeBoolean(latLng != null)
+        if (latLng != null) {
+          output.writeDouble(latLng.latitude)
+          output.writeDouble(latLng.longitude)
+        }
+        val placeTypes = place.placeTypes.orEmpty()
+        output.writeInt(placeTypes.size)
+        placeTypes.forEach { output.writeUTF(it) }
+      }
+      output.flush()
+      file.finishWrite(stream)
+    } catch (e: IOException) {
+      Log.w(TAG, "Could not persist the place cache", e)
+      file.failWrite(stream)
+    }
+  }
+
+  companion object {
+    private const val TAG = "PlaceCache"
+    private const val FILE_NAME = "place_cache.bin"
+    // Bump whenever the file layout changes; files written in any other version are discarded.
+    internal const val FORMAT_VERSION = 2
+    private const val DEFAULT_CAPACITY = 50
+
+    @Volatile private var instance: PlaceCache? = null
+
+    /** Returns the app's place cache, stored in its private files directory. */
+    fun getInstance(context: Context): PlaceCache =
+      instance
+        ?: synchronized(this) {
+          instance
+            ?: PlaceCache(
+                AtomicFile(File(context.applicationContext.filesDir, FILE_NAME)),
+                DEFAULT_CAPACITY,
+              )
+              .also { instance = it }
+        }
+
+    // Drops any field that isn't persisted, so a place behaves the same before and after a restart.
+    private fun copyCachedFields(place: Place): Place {
+      val builder = Place.builder().setId(place.id).setName(place.name)
+      place.latLng?.let { builder.setLatLng(it) }
+      return builder.setPlaceTypes(place.placeTypes.orEmpty()).build()
+    }
+  }
+}
@@ -18,6 +18,11 @@ package com.example.navigationapidemo
 
 import android.content.Intent
 import android.os.Bundle
+import android.text.Editable
+import android.text.TextWatcher
+import android.widget.ArrayAdapter
+import android.widget.EditText
+import android.widget.ListView
 import androidx.appcompat.app.AppCompatActivity
 import com.example.navigationapidemo.EdgeToEdgeUtil.EdgeToEdgeMarginConfig
 import com.google.android.gms.common.api.Status
@@ -26,8 +31,19 @@ import com.google.android.libraries.places.widget.AutocompleteSupportFragment
 import com.google.android.libraries.places.widget.listener.PlaceSelectionListener
 import java.util.Arrays
 
-/** An activity to host AutocompleteSupportFragment from Places SDK. */
+/**
+ * An activity to host AutocompleteSupportFragment from Places SDK.
+ *
+ * Places picked before are remembered in a [PlaceCache] and listed below the search box, together
+ * with matching sites from the offline [SiteIndex], so that repeat destinations can be picked
+ * without a Places API request.
+ */
 class PlacePickerActivity : AppCompatActivity() {
+  private lateinit var placeCache: PlaceCache
+  private lateinit var savedPlacesAdapter: ArrayAdapter<String>
+  private var savedPlaces = listOf<Place>()
+  private var siteIndex: SiteIndex? = null
+
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
     setContentView(R.layout.activity_place_picker)
@@ -53,8 +69,8 @@ class PlacePickerActivity : AppCompatActivity() {
     autocompleteFragment?.setOnPlaceSelectedListener(
       object : PlaceSelectionListener {
         override fun onPlaceSelected(place: Place) {
-          setResult(RESULT_OK, Intent().putExtra("PLACE", place))
-          finish()
+          placeCache.put(place)
+          returnPlace(place)
         }
 
         override fun onError(status: Status) {
@@ -63,6 +79,48 @@ class PlacePickerActivity : AppCompatActivity() {
         }
       }
     )
+
+    placeCache = PlaceCache.getInstance(this)
+    savedPlacesAdapter = ArrayAdapter(this, android.R.layout.simple_list_item_1)
+    val savedPlacesFilter = findViewById<EditText>(R.id.saved_places_filter)
+    findViewById<ListView>(R.id.saved_places_list).apply {
+      adapter = savedPlacesAdapter
+      setOnItemClickListener { _, _, position, _ ->
+        val place = savedPlaces[position]
+        // Mark the place as the most recently used one.
+        placeCache.put(place)
+        returnPlace(place)
+      }
+    }
+    savedPlacesFilter.addTextChangedListener(
+      object : TextWatcher {
+        override fun beforeTextChanged(s: CharSequence?, start: Int, count: Int, after: Int) {}
+
+        override fun onTextChanged(s: CharSequence?, start: Int, before: Int, count: Int) {}
+
+        override fun afterTextChanged(s: Editable?) {
+          showSavedPlaces(s?.toString().orEmpty())
+        }
+      }
+    )
+    placeCache.load { showSavedPlaces(savedPlacesFilter.text.toString()) }
+    SiteIndex.load(this) {
+      siteIndex = it
+      showSavedPlaces(savedPlacesFilter.text.toString())
+    }
+  }
+
+  private fun showSavedPlaces(prefix: String) {
+    // Known sites matching the prefix are listed after the places picked before.
+    savedPlaces =
+      placeCache.search(prefix) + siteIndex?.search(prefix).orEmpty().map { it.toPlace() }
+    savedPlacesAdapter.clear()
+    savedPlacesAdapter.addAll(savedPlaces.map { it.name.orEmpty() })
+  }
+
+  private fun returnPlace(place: Place) {
+    setResult(RESULT_OK, Intent().putExtra("PLACE", place))
+    finish()
   }
 
   companion object {
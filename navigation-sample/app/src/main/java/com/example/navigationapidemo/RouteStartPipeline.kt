@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.SystemClock
+import android.util.Log
+import android.view.Choreographer
+import androidx.annotation.MainThread
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleEventObserver
+import androidx.lifecycle.LifecycleOwner
+import com.example.navigationapidemo.NavigationMetrics.Gauge
+import com.google.android.libraries.navigation.Navigator
+import com.google.android.libraries.navigation.SimulationOptions
+
+/**
+ * Starts guidance once a route has been found (`RouteStatus.OK`), in stages:
+ * 1. The navigator stage enables voice guidance, starts the simulation in debug builds and starts
+ *    guidance. The Navigator may only be called on the main thread, so this stage runs right away,
+ *    and contains nothing else.
+ * 2. The UI stage, e.g. hiding the action bar and swapping fragments, runs in a single frame
+ *    callback on the next frame, so all of its view changes are laid out and drawn together
+ *    instead of each one invalidating the hierarchy separately.
+ * 3. Once the frame with the UI stage's changes has been drawn, the time since the route result
+ *    arrived is logged and recorded as [Gauge.ROUTE_START_MILLIS].
+ *
+ * The frame callbacks are only posted while the given [LifecycleOwner] is started, and are removed
+ * when it stops, so the UI stage never commits fragment transactions after the state has been
+ * saved. If the owner stops before the UI stage has run, it runs once the owner is started again.
+ */
+object RouteStartPipeline {
+  private const val TAG = "RouteStartPipeline"
+
+  /**
+   * Starts guidance on [navigator], then runs [uiStage] on the next frame while [owner] is started.
+   */
+  @MainThread
+  fun start(owner: LifecycleOwner, navigator: Navigator, uiStage: () -> Unit) {
+    val routeOkNanos = SystemClock.elapsedRealtimeNanos()
+
+    // Enable voice audio guidance (through the device speaker)
+    navigator.setAudioGuidance(Navigator.AudioGuidance.VOICE_ALERTS_AND_GUIDANCE)
+
+    // Simulate vehicle progress along the route (for demo/debug builds)
+    if (BuildConfig.DEBUG) {
+      navigator.simulator.simulateLocationsAlongExistingRoute(
+        SimulationOptions().speedMultiplier(5f)
+      )
+    }
+
+    // Start turn-by-turn guidance along the current route
+    navigator.startGuidance()
+    NavigationMetrics.onGuidanceStarted()
+    val navigatorStageNanos = SystemClock.elapsedRealtimeNanos()
+
+    owner.lifecycle.addObserver(UiStage(owner, uiStage, routeOkNanos, navigatorStageNanos))
+  }
+
+  /** Runs the UI stage and measures its first frame, following the lifecycle of [owner]. */
+  private class UiStage(
+    private val owner: LifecycleOwner,
+    private val uiStage: () -> Unit,
+    private val routeOkNanos: Long,
+    private val navigatorStageNanos: Long,
+  ) : LifecycleEventObserver {
+    private val choreographer = Choreographer.getInstance()
+    private var uiStageRan = false
+
+    private val uiStageCallback =
+      Choreographer.FrameCallback {
+        uiStageRan = true
+        uiStage()
+        // Frame callbacks run before the frame is laid out and drawn, so the next one marks the end
+        // of the first frame that shows guidance.
+        choreographer.postFrameCallback(frameDrawnCallback)
+      }
+
+    private val frameDrawnCallback =
+      Choreographer.FrameCallback {
+        val routeStartMillis = (SystemClock.elapsedRealtimeNanos() - routeOkNanos) / 1_000_000
+        NavigationMetrics.set(Gauge.ROUTE_START_MILLIS, routeStartMillis)
+        Log.d(
+          TAG,
+          "First guidance frame drawn ${routeStartMillis}ms after the route was found " +
+            "(navigator stage: ${(navigatorStageNanos - routeOkNanos) / 1_000_000}ms)",
+        )
+        owner.lifecycle.removeObserver(this)
+      }
+
+    override fun onStateChanged(source: LifecycleOwner, event: Lifecycle.Event) {
+      when (event) {
+        // Also delivered right away when the observer is added to a started owner.
+        Lifecycle.Event.ON_START ->
+          if (!uiStageRan) {
+            choreographer.postFrameCallback(uiStageCallback)
+          }
+        Lifecycle.Event.ON_STOP -> {
+          choreographer.removeFrameCallback(uiStageCallback)
+          choreographer.removeFrameCallback(frameDrawnCallback)
+          if (uiStageRan) {
+            owner.lifecycle.removeObserver(this)
+          }
+        }
+        Lifecycle.Event.ON_DESTROY -> owner.lifecycle.removeObserver(this)
+        else -> {}
+      }
+    }
+  }
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.content.Context
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.navigation.Waypoint
+import com.google.android.libraries.places.api.model.Place
+import com.google.android.libraries.places.api.model.PlaceTypes
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.Locale
+import java.util.concurrent.Executors
+import kotlin.math.cos
+import kotlin.math.floor
+import kotlin.math.min
+
+/**
+ * An offline index over a fixed list of known sites, such as depots and customer addresses.
+ *
+ * The index answers name-prefix searches with a binary search over the sites sorted by name, and
+ * nearest-site lookups by scanning the cells of a uniform latitude/longitude grid outwards from the
+ * query location. Both run in well under a millisecond for lists of tens of thousands of sites, see
+ * `SiteIndexBenchmark`, and [Site.toWaypoint] builds a [Waypoint] without any network request.
+ *
+ * Site lists are imported from a CSV file with `name,latitude,longitude[,placeId]` rows, and are
+ * then stored in a compact binary file that is memory-mapped on later loads. See [load].
+ *
+ * The index is a view over that binary format, including the name order and the grid, so a mapped
+ * index is read straight from the mapping, and only the pages that lookups touch are loaded.
+ */
+class SiteIndex private constructor(private val buffer: ByteBuffer) {
+  /** A known site. A site without a place ID is routed to by its location. */
+  data class Site(val name: String, val placeId: String?, val latLng: LatLng) {
+    fun toWaypoint(): Waypoint =
+      if (placeId != null) {
+        Waypoint.builder().setPlaceIdString(placeId).build()
+      } else {
+        Waypoint.builder().setLatLng(latLng.latitude, latLng.longitude).setTitle(name).build()
+      }
+
+    /**
+     * Converts the site into a [Place], as returned by [PlacePickerActivity]. Sites without a place
+     * ID are typed as geocoded addresses, so that they are routed to by their location.
+     */
+    fun toPlace(): Place {
+      val builder = Place.builder().setName(name).setLatLng(latLng)
+      return if (placeId != null) {
+        builder.setId(placeId).build()
+      } else {
+        builder.setPlaceTypes(listOf(PlaceTypes.GEOCODE)).build()
+      }
+    }
+  }
+
+  /** The number of sites in the index. */
+  val size: Int = buffer.getInt(COUNT_OFFSET)
+
+  private val cellCount = buffer.getInt(CELL_COUNT_OFFSET)
+
+  // The sections of the binary format, see encode().
+  private val latitudesOffset = HEADER_BYTES
+  private val longitudesOffset = latitudesOffset + size * Int.SIZE_BYTES
+  private val nameOrderOffset = longitudesOffset + size * Int.SIZE_BYTES
+  private val cellKeysOffset = nameOrderOffset + size * Int.SIZE_BYTES
+  private val cellStartsOffset = cellKeysOffset + cellCount * Long.SIZE_BYTES
+  private val cellSitesOffset = cellStartsOffset + (cellCount + 1) * Int.SIZE_BYTES
+  private val stringOffsetsOffset = cellSitesOffset + size * Int.SIZE_BYTES
+
+  init {
+    // Checked in longs, so that corrupt counts can't overflow the section offsets.
+    val minimumBytes =
+      HEADER_BYTES +
+        5L * size * Int.SIZE_BYTES +
+        cellCount.toLong() * Long.SIZE_BYTES +
+        (cellCount + 1L) * Int.SIZE_BYTES
+    if (size < 0 || cellCount < 0 || buffer.limit() < minimumBytes) {
+      throw IOException("Truncated site index")
+    }
+  }
+
+  /** Returns up to [limit] sites whose name starts with [prefix], in alphabetical order. */
+  fun search(prefix: String, limit: Int = DEFAULT_SEARCH_LIMIT): List<Site> {
+    val normalizedPrefix = prefix.trim().lowercase(Locale.ROOT)
+    if (normalizedPrefix.isEmpty()) {
+      return emptyList()
+    }
+    // Find the first name that is not less than the prefix; all matches follow it.
+    var low = 0
+    var high = size
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (sortedName(mid) < normalizedPrefix) low = mid + 1 else high = mid
+    }
+    val matches = mutableListOf<Site>()
+    var i = low
+    while (i < size && matches.size < limit && sortedName(i).startsWith(normalizedPrefix)) {
+      matches.add(site(nameOrder(i)))
+      i++
+    }
+    return matches
+  }
+
+  /** Returns the site closest to [latLng], or null if the index is empty. */
+  fun nearest(latLng: LatLng): Site? {
+    if (size == 0) {
+      return null
+    }
+    val latitudeE7 = toE7(latLng.latitude)
+    val longitudeE7 = toE7(latLng.longitude)
+    val row = cellRow(latitudeE7)
+    val column = cellColumn(longitudeE7)
+    val longitudeScale = cos(Math.toRadians(latLng.latitude))
+    // Every site in ring r is at least (r - 1) cells away in latitude or longitude.
+    val cellSizeE7 = CELL_SIZE_E7 * min(1.0, longitudeScale)
+
+    var nearestSite = -1
+    var nearestDistanceSquared = Double.MAX_VALUE
+    for (ring in 0..MAX_SEARCH_RINGS) {
+      if (nearestSite >= 0 && ring > 0) {
+        val ringDistance = (ring - 1) * cellSizeE7
+        if (ringDistance * ringDistance > nearestDistanceSquared) {
+          break
+        }
+      }
+      for (rowOffset in -ring..ring) {
+        val onRingEdge = rowOffset == -ring || rowOffset == ring
+        val columnStep = if (onRingEdge || ring == 0) 1 else 2 * ring
+        var columnOffset = -ring
+        while (columnOffset <= ring) {
+          val cell = findCell(cellKey(row + rowOffset, column + columnOffset))
+          if (cell >= 0) {
+            for (j in cellStart(cell) until cellStart(cell + 1)) {
+              val site = cellSite(j)
+              val distanceSquared =
+                distanceSquaredE7(latitudeE7, longitudeE7, site, longitudeScale)
+              if (distanceSquared < nearestDistanceSquared) {
+                nearestDistanceSquared = distanceSquared
+                nearestSite = site
+              }
+            }
+          }
+          columnOffset += columnStep
+        }
+      }
+    }
+
+    if (nearestSite < 0) {
+      // The query is far away from every site, so fall back to checking all of them.
+      for (site in 0 until size) {
+        val distanceSquared = distanceSquaredE7(latitudeE7, longitudeE7, site, longitudeScale)
+        if (distanceSquared < nearestDistanceSquared) {
+          nearestDistanceSquared = distanceSquared
+          nearestSite = site
+        }
+      }
+    }
+    return site(nearestSite)
+  }
+
+  /** Writes the index in the binary format read by [fromMappedFile]. */
+  @Throws(IOException::class)
+  fun writeTo(file: File) {
+    val tempFile = File(file.path + ".tmp")
+    FileOutputStream(tempFile).use { output ->
+      val contents = buffer.duplicate()
+      contents.clear()
+      while (contents.hasRemaining()) {
+        output.channel.write(contents)
+      }
+    }
+    if (!tempFile.renameTo(file)) {
+      throw IOException("Could not replace $file")
+    }
+  }
+
+  private fun latitudeE7(site: Int) = buffer.getInt(latitudesOffset + site * Int.SIZE_BYTES)
+
+  private fun longitudeE7(site: Int) = buffer.getInt(longitudesOffset + site * Int.SIZE_BYTES)
+
+  /** Returns the index of the site that comes [position]th by name. */
+  private fun nameOrder(position: Int) = buffer.getInt(nameOrderOffset + position * Int.SIZE_BYTES)
+
+  private fun sortedName(position: Int) = name(nameOrder(position)).lowercase(Locale.ROOT)
+
+  // The sites of the i-th cell are cellSite(cellStart(i) until cellStart(i + 1)).
+  private fun cellStart(cell: Int) = buffer.getInt(cellStartsOffset + cell * Int.SIZE_BYTES)
+
+  private fun cellSite(j: Int) = buffer.getInt(cellSitesOffset + j * Int.SIZE_BYTES)
+
+  /** Returns the index of the cell with [key], or a negative number if it has no sites. */
+  private fun findCell(key: Long): Int {
+    var low = 0
+    var high = cellCount - 1
+    while (low <= high) {
+      val mid = (low + high) ushr 1
+      val midKey = buffer.getLong(cellKeysOffset + mid * Long.SIZE_BYTES)
+      when {
+        midKey < key -> low = mid + 1
+        midKey > key -> high = mid - 1
+        else -> return mid
+      }
+    }
+    return -1
+  }
+
+  // A site's place ID immediately follows its name, and is empty if it has none.
+  private fun stringOffset(site: Int) = buffer.getInt(stringOffsetsOffset + site * Int.SIZE_BYTES)
+
+  private fun name(site: Int) = readString(stringOffset(site))
+
+  private fun placeId(site: Int): String? {
+    val nameOffset = stringOffset(site)
+    val placeIdOffset = nameOffset + Int.SIZE_BYTES + buffer.getInt(nameOffset)
+    return readString(placeIdOffset).takeIf { it.isNotEmpty() }
+  }
+
+  private fun readString(offset: Int): String {
+    // A duplicate keeps the shared buffer's position untouched, so lookups are thread-safe.
+    val bytes = buffer.duplicate()
+    bytes.limit(offset + Int.SIZE_BYTES + buffer.getInt(offset))
+    bytes.position(offset + Int.SIZE_BYTES)
+    return Charsets.UTF_8.decode(bytes).toString()
+  }
+
+  private fun site(index: Int) =
+    Site(
+      name(index),
+      placeId(index),
+      LatLng(latitudeE7(index) / E7, longitudeE7(index) / E7),
+    )
+
+  private fun distanceSquaredE7(
+    latitudeE7: Int,
+    longitudeE7: Int,
+    site: Int,
+    longitudeScale: Double,
+  ): Double {
+    // An equirectangular approximation, which is accurate enough to rank nearby sites.
+    val deltaLatitude = (latitudeE7(site) - latitudeE7).toDouble()
+    val deltaLongitude = (longitudeE7(site) - longitudeE7) * longitudeScale
+    return deltaLatitude * deltaLatitude + deltaLongitude * deltaLongitude
+  }
+
+  companion object {
+    private const val TAG = "SiteIndex"
+    private const val CSV_FILE_NAME = "sites.csv"
+    private const val BINARY_FILE_NAME = "sites.bin"
+    private const val MAGIC = 0x53495445 // "SITE"
+    private const val FORMAT_VERSION = 2
+    private const val E7 = 1e7
+    private const val DEFAULT_SEARCH_LIMIT = 20
+
+    // The header holds the magic number, the format version, the site count and the cell count.
+    private const val COUNT_OFFSET = 8
+    private const val CELL_COUNT_OFFSET = 12
+    private const val HEADER_BYTES = 16
+
+    /** Grid cells are 0.05 degrees, or about 5.5 km, high. */
+    private const val CELL_SIZE_E7 = 500_000
+
+    /** The number of grid rings searched before falling back to a linear scan. */
+    private const val MAX_SEARCH_RINGS = 20
+
+    private val loadExecutor = Executors.newSingleThreadExecutor()
+    private val mainHandler = Handler(Looper.getMainLooper())
+    @Volatile private var instance: SiteIndex? = null
+
+    /**
+     * Loads the app's site list on a background thread, and invokes [onLoaded] on the main thread
+     * with the index, or with null if there is no site list.
+     *
+     * The binary file is used when present. Otherwise `sites.csv` is imported from the app's files
+     * directory, and the binary file is written for next time.
+     */
+    fun load(context: Context, onLoaded: (SiteIndex?) -> Unit) {
+      instance?.let {
+        mainHandler.post { onLoaded(it) }
+        return
+      }
+      val filesDir = context.applicationContext.filesDir
+      loadExecutor.execute {
+        val siteIndex = instance ?: loadFromFiles(filesDir)?.also { instance = it }
+        mainHandler.post { onLoaded(siteIndex) }
+      }
+    }
+
+    /** Returns the CSV file that site lists are imported from. */
+    fun importFile(context: Context) = File(context.filesDir, CSV_FILE_NAME)
+
+    private fun loadFromFiles(filesDir: File): SiteIndex? {
+      val startMillis = SystemClock.elapsedRealtime()
+      val binaryFile = File(filesDir, BINARY_FILE_NAME)
+      val csvFile = File(filesDir, CSV_FILE_NAME)
+      val siteIndex =
+        try {
+          if (binaryFile.exists() && binaryFile.lastModified() >= csvFile.lastModified()) {
+            fromMappedFile(binaryFile)
+          } else if (csvFile.exists()) {
+            csvFile.inputStream().use { fromCsv(it) }.also { it.writeTo(binaryFile) }
+          } else {
+            null
+          }
+        } catch (e: IOException) {
+          Log.w(TAG, "Could not load the site list", e)
+          null
+        } ?: return null
+      Log.d(
+        TAG,
+        "Loaded ${siteIndex.size} sites in ${SystemClock.elapsedRealtime() - startMillis}ms",
+      )
+      return siteIndex
+    }
+
+    /**
+     * Reads an index from a CSV file with `name,latitude,longitude[,placeId]` rows. Names may be
+     * quoted to contain commas. A header row and malformed rows are skipped.
+     */
+    @Throws(IOException::class)
+    fun fromCsv(input: InputStream): SiteIndex {
+      val names = mutableListOf<String>()
+      val placeIds = mutableListOf<String?>()
+      val latitudes = mutableListOf<Int>()
+      val longitudes = mutableListOf<Int>()
+      input.bufferedReader().forEachLine { line ->
+        val fields = splitCsvLine(line)
+        val latitude = fields.getOrNull(1)?.toDoubleOrNull()
+        val longitude = fields.getOrNull(2)?.toDoubleOrNull()
+        if (latitude == null || longitude == null) {
+          return@forEachLine
+        }
+        names.add(fields[0])
+        placeIds.add(fields.getOrNull(3)?.takeIf { it.isNotEmpty() })
+        latitudes.add(toE7(latitude))
+        longitudes.add(toE7(longitude))
+      }
+      return SiteIndex(ByteBuffer.wrap(encode(names, placeIds, latitudes, longitudes)))
+    }
+
+    /**
+     * Opens an index written by [writeTo] through a read-only memory mapping of the file. Sites are
+     * read from the mapping as they are looked up.
+     */
+    @Throws(IOException::class)
+    fun fromMappedFile(file: File): SiteIndex {
+      val buffer: ByteBuffer =
+        RandomAccessFile(file, "r").use {
+          it.channel.map(FileChannel.MapMode.READ_ONLY, 0, it.length())
+        }
+      if (
+        buffer.limit() < HEADER_BYTES ||
+          buffer.getInt(0) != MAGIC ||
+          buffer.getInt(Int.SIZE_BYTES) != FORMAT_VERSION
+      ) {
+        throw IOException("$file is not a site index")
+      }
+      return SiteIndex(buffer)
+    }
+
+    /**
+     * Encodes sites in the binary format: a header, the latitudes and longitudes, the site indices
+     * sorted by lower-case name, the grid cell keys in ascending order, the start of each cell's
+     * sites, the site indices grouped by cell, the offset of each site's strings, and finally each
+     * site's name and place ID.
+     */
+    private fun encode(
+      names: List<String>,
+      placeIds: List<String?>,
+      latitudesE7: List<Int>,
+      longitudesE7: List<Int>,
+    ): ByteArray {
+      val size = names.size
+      val lowerCaseNames = Array(size) { names[it].lowercase(Locale.ROOT) }
+      val nameOrder = (0 until size).sortedBy { lowerCaseNames[it] }
+
+      val siteCellKeys =
+        LongArray(size) { cellKey(cellRow(latitudesE7[it]), cellColumn(longitudesE7[it])) }
+      val cellSites = (0 until size).sortedBy { siteCellKeys[it] }
+      val cellKeys = mutableListOf<Long>()
+      val cellStarts = mutableListOf<Int>()
+      for (i in cellSites.indices) {
+        val key = siteCellKeys[cellSites[i]]
+        if (cellKeys.isEmpty() || cellKeys.last() != key) {
+          cellKeys.add(key)
+          cellStarts.add(i)
+        }
+      }
+      cellStarts.add(size)
+
+      val encodedNames = names.map { encodeString(it) }
+      val encodedPlaceIds = placeIds.map { encodeString(it.orEmpty()) }
+      val stringsOffset =
+        HEADER_BYTES +
+          5 * size * Int.SIZE_BYTES +
+          cellKeys.size * Long.SIZE_BYTES +
+          cellStarts.size * Int.SIZE_BYTES
+
+      val bytes = ByteArrayOutputStream()
+      DataOutputStream(bytes).use { output ->
+        output.writeInt(MAGIC)
+        output.writeInt(FORMAT_VERSION)
+        output.writeInt(size)
+        output.writeInt(cellKeys.size)
+        latitudesE7.forEach { output.writeInt(it) }
+        longitudesE7.forEach { output.writeInt(it) }
+        nameOrder.forEach { output.writeInt(it) }
+        cellKeys.forEach { output.writeLong(it) }
+        cellStarts.forEach { output.writeInt(it) }
+        cellSites.forEach { output.writeInt(it) }
+        var stringOffset = stringsOffset
+        for (i in 0 until size) {
+          output.writeInt(stringOffset)
+          stringOffset += 2 * Int.SIZE_BYTES + encodedNames[i].size + encodedPlaceIds[i].size
+        }
+        for (i in 0 until size) {
+          writeString(output, encodedNames[i])
+          writeString(output, encodedPlaceIds[i])
+        }
+      }
+      return bytes.toByteArray()
+    }
+
+    private fun encodeString(value: String) = value.toByteArray(Charsets.UTF_8)
+
+    private fun writeString(output: DataOutputStream, bytes: ByteArray) {
+      output.writeInt(bytes.size)
+      output.write(bytes)
+    }
+
+    private fun splitCsvLine(line: String): List<String> {
+      val fields = mutableListOf<String>()
+      val field = StringBuilder()
+      var quoted = false
+      var i = 0
+      while (i < line.length) {
+        val c = line[i]
+        when {
+          quoted && c == '"' && line.getOrNull(i + 1) == '"' -> {
+            field.append('"')
+            i++
+          }
+          c == '"' -> quoted = !quoted
+          c == ',' && !quoted -> {
+            fields.add(field.toString().trim())
+            field.setLength(0)
+          }
+          else -> field.append(c)
+        }
+        i++
+      }
+      fields.add(field.toString().trim())
+      return fields
+    }
+
+    private fun toE7(degrees: Double) = Math.round(degrees * E7).toInt()
+
+    private fun cellRow(latitudeE7: Int) = floor(latitudeE7.toDouble() / CELL_SIZE_E7).toInt()
+
+    private fun cellColumn(longitudeE7: Int) = floor(longitudeE7.toDouble() / CELL_SIZE_E7).toInt()
+
+    private fun cellKey(row: Int, column: Int) =
+      (row.toLong() shl 32) or (column.toLong() and 0xffffffffL)
+  }
+}
@@ -23,21 +23,23 @@ import android.content.pm.PackageManager
 import android.os.Build.VERSION
 import android.os.Build.VERSION_CODES
 import android.os.Bundle
-import android.os.Handler
 import android.widget.ImageView
 import androidx.activity.result.contract.ActivityResultContracts.RequestMultiplePermissions
 import androidx.appcompat.app.AppCompatActivity
 import androidx.core.content.ContextCompat
 import com.bumptech.glide.Glide
 import com.example.navigationapidemo.EdgeToEdgeUtil.EdgeToEdgeMarginConfig
+import com.google.android.libraries.navigation.NavigationApi
 import com.google.android.libraries.places.api.Places
-import java.util.concurrent.TimeUnit
 
 /** The main activity showing a splash screen and requesting for location permission. */
 class SplashScreenActivity : AppCompatActivity() {
+  @Volatile private var apiKey: String? = null
+  private var criticalStartupFinished = false
+  private var locationPermissionGranted = false
+
   override fun onCreate(bundle: Bundle?) {
     super.onCreate(bundle)
-    Places.initialize(applicationContext, getApiKeyFromMetaData())
     setContentView(R.layout.activity_splash_screen)
 
     // Margins are only set if the edge-to-edge mode is enabled, it's enabled by default for Android
@@ -48,12 +50,37 @@ class SplashScreenActivity : AppCompatActivity() {
     )
 
     val imageView = findViewById<ImageView>(R.id.splash_image)
-
-    Glide.with(this)
-      .load("http://services.google.com/fh/files/misc/google_maps_logo_480.png")
-      .placeholder(R.drawable.google_maps_logo)
-      .fitCenter()
-      .into(imageView)
+    // Show the bundled logo right away, and swap in the remote one once Glide has been warmed up
+    // off the main thread.
+    imageView.setImageResource(R.drawable.google_maps_logo)
+
+    // The independent initialization steps run concurrently. The splash screen is dismissed as
+    // soon as the critical ones have finished, instead of after a fixed delay.
+    val startupOrchestrator = StartupOrchestrator()
+    startupOrchestrator.addTask(METADATA_TASK) { apiKey = getApiKeyFromMetaData() }
+    startupOrchestrator.addTask(PLACES_TASK, dependsOn = listOf(METADATA_TASK)) {
+      Places.initialize(applicationContext, apiKey!!)
+    }
+    startupOrchestrator.addTask(NAVIGATION_API_TASK, isCritical = false) {
+      // Loads the Navigation SDK classes and its persisted state before the first demo needs them.
+      NavigationApi.areTermsAccepted(application)
+    }
+    startupOrchestrator.addTask(GLIDE_TASK, isCritical = false) {
+      Glide.get(applicationContext)
+      runOnUiThread {
+        if (!isDestroyed) {
+          Glide.with(this)
+            .load("http://services.google.com/fh/files/misc/google_maps_logo_480.png")
+            .placeholder(R.drawable.google_maps_logo)
+            .fitCenter()
+            .into(imageView)
+        }
+      }
+    }
+    startupOrchestrator.start {
+      criticalStartupFinished = true
+      startMainActivityWhenReady()
+    }
 
     val permissions =
       if (VERSION.SDK_INT >= VERSION_CODES.TIRAMISU) {
@@ -73,7 +100,8 @@ class SplashScreenActivity : AppCompatActivity() {
           RequestMultiplePermissions(),
           { permissionResults ->
             if (permissionResults.getOrDefault(permission.ACCESS_FINE_LOCATION, false)) {
-              onLocationPermissionGranted()
+              locationPermissionGranted = true
+              startMainActivityWhenReady()
             } else {
               finish()
             }
@@ -82,7 +110,7 @@ class SplashScreenActivity : AppCompatActivity() {
 
       permissionsLauncher.launch(permissions)
     } else {
-      Handler().postDelayed({ onLocationPermissionGranted() }, SPLASH_SCREEN_DELAY_MILLIS)
+      locationPermissionGranted = true
     }
   }
 
@@ -118,7 +146,12 @@ class SplashScreenActivity : AppCompatActivity() {
   /** Update this method to control the outcome when the workaround is unsuccessful. */
   private fun handleShouldShowRequestPermissionRationaleFixFailure(permission: String) = true
 
-  private fun onLocationPermissionGranted() {
+  /** Moves on to [MainActivity] once start-up has finished and location permission is granted. */
+  private fun startMainActivityWhenReady() {
+    // Start-up can finish after the activity is gone, e.g. when the user backs out of the splash.
+    if (!criticalStartupFinished || !locationPermissionGranted || isFinishing || isDestroyed) {
+      return
+    }
     val mainActivity = Intent(this, MainActivity::class.java)
     mainActivity.action = MAIN_ACTIVITY_INTENT_ACTION
     startActivity(mainActivity)
@@ -144,6 +177,9 @@ class SplashScreenActivity : AppCompatActivity() {
   companion object {
     const val MAIN_ACTIVITY_INTENT_ACTION = "com.example.navigationapidemo.intent.action.MAIN"
     private const val MY_PERMISSIONS_REQUEST_ACCESS_LOCATION = 100
-    private val SPLASH_SCREEN_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(2)
+    private const val METADATA_TASK = "metadata"
+    private const val PLACES_TASK = "places"
+    private const val NAVIGATION_API_TASK = "navigationApi"
+    private const val GLIDE_TASK = "glide"
   }
 }
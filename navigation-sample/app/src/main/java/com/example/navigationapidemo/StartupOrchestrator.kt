@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs the app's start-up tasks concurrently on a small thread pool, starting each task as soon as
+ * all of the tasks it depends on have finished.
+ *
+ * Tasks are either critical or best-effort. [start] notifies its callback on the main thread once
+ * every critical task has finished, so the splash screen can be dismissed without waiting for
+ * best-effort warm-ups. The duration of each task is logged when it finishes.
+ *
+ * An exception thrown by a critical task is rethrown on the main thread, matching what would have
+ * happened had the task run inline in `onCreate`. A best-effort task that fails is logged and
+ * treated as finished, so its dependents still run and the pool is still shut down afterwards.
+ */
+class StartupOrchestrator {
+  private class Task(
+    val name: String,
+    val dependsOn: List<String>,
+    val isCritical: Boolean,
+    val block: () -> Unit,
+  ) {
+    val pendingDependencies = AtomicInteger(dependsOn.size)
+    val dependents = mutableListOf<Task>()
+  }
+
+  private val tasks = linkedMapOf<String, Task>()
+  private val mainHandler = Handler(Looper.getMainLooper())
+  private val remainingCriticalTasks = AtomicInteger()
+  private val remainingTasks = AtomicInteger()
+  private var executor: ExecutorService? = null
+  private var startTimeMillis = 0L
+
+  /**
+   * Declares a task named [name] that runs [block] once all tasks in [dependsOn] have finished.
+   *
+   * Dependencies must be declared before their dependents, which also rules out cycles.
+   */
+  fun addTask(
+    name: String,
+    dependsOn: List<String> = emptyList(),
+    isCritical: Boolean = true,
+    block: () -> Unit,
+  ) {
+    check(executor == null) { "Tasks must be added before the orchestrator is started." }
+    require(name !in tasks) { "Duplicate start-up task: $name" }
+    val task = Task(name, dependsOn, isCritical, block)
+    for (dependencyName in dependsOn) {
+      val dependency =
+        requireNotNull(tasks[dependencyName]) { "Unknown dependency $dependencyName of $name" }
+      dependency.dependents.add(task)
+    }
+    tasks[name] = task
+  }
+
+  /**
+   * Starts all declared tasks, and invokes [onCriticalPathFinished] on the main thread once every
+   * critical task has finished.
+   */
+  fun start(onCriticalPathFinished: () -> Unit) {
+    check(executor == null) { "The orchestrator can only be started once." }
+    startTimeMillis = SystemClock.elapsedRealtime()
+    executor = Executors.newFixedThreadPool(THREAD_COUNT)
+    remainingTasks.set(tasks.size)
+    remainingCriticalTasks.set(tasks.values.count { it.isCritical })
+
+    if (remainingCriticalTasks.get() == 0) {
+      mainHandler.post(onCriticalPathFinished)
+    }
+    for (task in tasks.values) {
+      if (task.dependsOn.isEmpty()) {
+        submit(task, onCriticalPathFinished)
+      }
+    }
+  }
+
+  private fun submit(task: Task, onCriticalPathFinished: () -> Unit) {
+    try {
+      executor?.execute { run(task, onCriticalPathFinished) }
+    } catch (e: RejectedExecutionException) {
+      // A critical task failed and shut the pool down, see run().
+    }
+  }
+
+  private fun run(task: Task, onCriticalPathFinished: () -> Unit) {
+    val taskStartMillis = SystemClock.elapsedRealtime()
+    try {
+      task.block()
+    } catch (e: RuntimeException) {
+      if (task.isCritical) {
+        executor?.shutdown()
+        mainHandler.post { throw e }
+        return
+      }
+      Log.e(TAG, "Best-effort start-up task ${task.name} failed", e)
+    }
+    val finishedMillis = SystemClock.elapsedRealtime()
+    Log.i(
+      TAG,
+      "${task.name} took ${finishedMillis - taskStartMillis}ms " +
+        "(finished ${finishedMillis - startTimeMillis}ms after start-up began)",
+    )
+
+    if (task.isCritical && remainingCriticalTasks.decrementAndGet() == 0) {
+      Log.i(TAG, "Critical path finished after ${finishedMillis - startTimeMillis}ms")
+      mainHandler.post(onCriticalPathFinished)
+    }
+    for (dependent in task.dependents) {
+      if (dependent.pendingDependencies.decrementAndGet() == 0) {
+        submit(dependent, onCriticalPathFinished)
+      }
+    }
+    if (remainingTasks.decrementAndGet() == 0) {
+      executor?.shutdown()
+    }
+  }
+
+  private companion object {
+    const val TAG = "StartupOrchestrator"
+    const val THREAD_COUNT = 3
+  }
+}
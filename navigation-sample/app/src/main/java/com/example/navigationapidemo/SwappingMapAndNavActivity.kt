@@ -17,26 +17,38 @@
 package com.example.navigationapidemo
 
 import android.content.Intent
+import android.graphics.Bitmap
 import android.os.Bundle
+import android.os.SystemClock
+import android.util.Log
 import android.view.Menu
 import android.view.MenuItem
+import android.view.View
 import android.view.WindowManager
+import android.widget.ImageView
 import android.widget.Toast
 import androidx.appcompat.app.AppCompatActivity
+import androidx.core.view.OneShotPreDrawListener
 import androidx.fragment.app.Fragment
+import androidx.fragment.app.FragmentManager
 import androidx.fragment.app.FragmentTransaction
+import androidx.lifecycle.Lifecycle
 import com.example.navigationapidemo.EdgeToEdgeUtil.EdgeToEdgeMarginConfig
+import com.google.android.gms.maps.OnMapReadyCallback
 import com.google.android.gms.maps.SupportMapFragment
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.navigation.ArrivalEvent
 import com.google.android.libraries.navigation.NavigationApi
 import com.google.android.libraries.navigation.NavigationApi.NavigatorListener
 import com.google.android.libraries.navigation.Navigator
 import com.google.android.libraries.navigation.Navigator.RouteStatus
-import com.google.android.libraries.navigation.SimulationOptions
 import com.google.android.libraries.navigation.SupportNavigationFragment
 import com.google.android.libraries.navigation.Waypoint
 import com.google.android.libraries.navigation.Waypoint.UnsupportedPlaceIdException
+import com.google.android.libraries.places.api.Places
 import com.google.android.libraries.places.api.model.Place
 import com.google.android.libraries.places.api.model.PlaceTypes
+import java.io.FileNotFoundException
 import java.lang.ref.WeakReference
 
 /**
@@ -52,12 +64,49 @@ import java.lang.ref.WeakReference
  * This activity mimics that behavior to support any customers who want to temporarily continue this
  * usage pattern. We recommend that v1 customers eventually transition to exclusively using a
  * NavigationView or SupportNavigationFragment, since these classes support the GoogleMap interface.
+ *
+ * By default, the two fragments are never detached: the SupportNavigationFragment is added while
+ * the route is being resolved, and the fragments are then cross-faded, so neither map surface is
+ * torn down and rebuilt on every swap. The fragment that is not shown is capped at the STARTED
+ * state, which pauses its map so that only one map renders at a time, and is moved offscreen.
+ * Both maps draw into SurfaceViews, whose stacking order doesn't follow the view order and which
+ * ignore view alpha, so the fragments are never stacked. Instead, a snapshot of the outgoing map
+ * covers the swap and is faded out. Unchecking "Cross-fade without detaching fragments" in the
+ * menu restores the original detach/attach behavior. Each swap logs how long it took until the
+ * next frame was drawn, and how many times each fragment's view (and with it, its map surface) has
+ * been created so far.
  */
 class SwappingMapAndNavActivity : AppCompatActivity() {
   private var navigator: Navigator? = null
   private lateinit var mapFragment: SupportMapFragment
   private lateinit var navigationFragment: SupportNavigationFragment
-  private var arrivalListener: Navigator.ArrivalListener? = null
+  private lateinit var swapSnapshot: ImageView
+  private var keepMapSurfaceAlive = true
+  private var showingNavigationFragment = false
+  private var mapViewCreationCount = 0
+  private var navigationViewCreationCount = 0
+  // Incremented by every swap, so a cross-fade waiting for a snapshot can tell it was superseded.
+  private var swapCount = 0
+
+  // The stops of the current multi-stop trip that haven't been reached yet, in route order.
+  private var remainingStops = listOf<Place>()
+  private val multiStopRoutePlanner = MultiStopRoutePlanner()
+  private val placesClient by lazy { Places.createClient(this) }
+
+  private val fragmentViewCreationCounter =
+    object : FragmentManager.FragmentLifecycleCallbacks() {
+      override fun onFragmentViewCreated(
+        fm: FragmentManager,
+        f: Fragment,
+        v: View,
+        savedInstanceState: Bundle?,
+      ) {
+        when (f) {
+          is SupportMapFragment -> mapViewCreationCount++
+          is SupportNavigationFragment -> navigationViewCreationCount++
+        }
+      }
+    }
 
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
@@ -67,11 +116,16 @@ class SwappingMapAndNavActivity : AppCompatActivity() {
     // V+ devices.
     // No margins are set for pre-Android V devices.
     EdgeToEdgeUtil.setMarginForEdgeToEdgeSupport(
-      listOf(EdgeToEdgeMarginConfig(view = findViewById(R.id.container)))
+      listOf(EdgeToEdgeMarginConfig(view = findViewById(R.id.swapping_layout_container)))
     )
+    swapSnapshot = findViewById(R.id.swap_snapshot)
 
     mapFragment = SupportMapFragment()
     navigationFragment = SupportNavigationFragment()
+    supportFragmentManager.registerFragmentLifecycleCallbacks(
+      fragmentViewCreationCounter,
+      /* recursive= */ false,
+    )
 
     // Start with a basic map on the screen.
     if (savedInstanceState == null) {
@@ -149,44 +203,122 @@ class SwappingMapAndNavActivity : AppCompatActivity() {
           return
         }
       }
+
+    // Inflate the navigation fragment behind the map while the route is being resolved, so that it
+    // is ready to be faded in as soon as guidance starts.
+    if (keepMapSurfaceAlive) {
+      prewarmNavigationFragment()
+    }
+    remainingStops = listOf(place)
     val pendingRoute = navigator?.setDestination(waypoint)
 
     // Set an action to perform when a route is determined to the destination
-    pendingRoute?.setOnResultListener { code ->
-      when (code) {
-        RouteStatus.OK -> {
-          // Hide the toolbar to maximize the navigation UI
-          actionBar?.hide()
-
-          // Enable voice audio guidance (through the device speaker)
-          navigator?.setAudioGuidance(Navigator.AudioGuidance.VOICE_ALERTS_AND_GUIDANCE)
-
-          // Simulate vehicle progress along the route (for demo/debug builds)
-          if (BuildConfig.DEBUG) {
-            navigator
-              ?.simulator
-              ?.simulateLocationsAlongExistingRoute(SimulationOptions().speedMultiplier(5f))
-          }
+    pendingRoute?.setOnResultListener { code -> onRouteResult(code) }
+  }
+
+  /**
+   * Plans a trip through every stop of the app's stop list, such as a delivery driver's shift. The
+   * stops are resolved concurrently, ordered once by [MultiStopRoutePlanner] and submitted in a
+   * single [Navigator.setDestinations] call.
+   *
+   * This method is referenced by the "Route Through Stop List" item in
+   * menu_swapping_map_and_nav.xml.
+   */
+  fun navigateToStopList(v: MenuItem?): Boolean {
+    if (keepMapSurfaceAlive) {
+      prewarmNavigationFragment()
+    }
+    MultiStopRoutePlanner.loadStopList(this, placesClient)
+      .addOnSuccessListener(this) { stops -> navigateToStops(stops) }
+      .addOnFailureListener(this) { e ->
+        if (e is FileNotFoundException) {
+          showToast("No stop list found. Add one at ${MultiStopRoutePlanner.stopListFile(this)}")
+        } else {
+          showToast("Could not look up the stops: ${e.message}")
+        }
+      }
+    return true
+  }
+
+  /** Routes through [stops] in the shortest order found by [MultiStopRoutePlanner]. */
+  private fun navigateToStops(stops: List<Place>) {
+    if (stops.isEmpty()) {
+      showToast("The stop list is empty.")
+      return
+    }
+    mapFragment.getMapAsync { map ->
+      // If the current location isn't known yet, the trip starts from the first stop of the list.
+      val origin =
+        map.myLocation?.let { LatLng(it.latitude, it.longitude) }
+          ?: stops.first().latLng
+          ?: return@getMapAsync
+      setStops(multiStopRoutePlanner.orderStops(origin, stops)) { code -> onRouteResult(code) }
+    }
+  }
+
+  /**
+   * Orders the remaining stops of a multi-stop trip again from the current location once the route
+   * has changed, e.g. because the driver left it, and resubmits them if the order changed.
+   */
+  private fun replanRemainingStops() {
+    if (remainingStops.size < 2) {
+      return
+    }
+    // The navigation fragment's map follows the driver while guidance is running.
+    navigationFragment.getMapAsync { map ->
+      val location = map.myLocation ?: return@getMapAsync
+      val orderedStops =
+        multiStopRoutePlanner.orderStops(
+          LatLng(location.latitude, location.longitude),
+          remainingStops,
+        )
+      if (orderedStops == remainingStops) {
+        return@getMapAsync
+      }
+      // Guidance is already running, so only report routing failures.
+      setStops(orderedStops) { code ->
+        if (code != RouteStatus.OK) {
+          showToast("Error re-planning the remaining stops: $code")
+        }
+      }
+    }
+  }
+
+  /** Replaces the trip's destinations with [orderedStops], visited in order. */
+  private fun setStops(orderedStops: List<Place>, onResult: (RouteStatus) -> Unit) {
+    val navigator = navigator ?: return
+    val waypoints =
+      try {
+        orderedStops.map { MultiStopRoutePlanner.toWaypoint(it) }
+      } catch (e: UnsupportedPlaceIdException) {
+        showToast("Place ID was unsupported.")
+        return
+      }
+    remainingStops = orderedStops
+    // All stops are submitted at once, so the Navigator computes a single route through them.
+    navigator.setDestinations(waypoints).setOnResultListener { code -> onResult(code) }
+  }
 
-          // Start turn-by-turn guidance along the current route
-          navigator?.startGuidance()
-          // And show the NavFragment to the user.
-          if (supportFragmentManager.findFragmentById(R.id.container) is SupportMapFragment) {
-            detachOldFragmentAndAddOrAttachNewFragment(
-              /*fragmentToDetach=*/ mapFragment,
-              /*fragmentToAttach=*/ navigationFragment,
-              NAVIGATION_FRAGMENT_TAG,
-            )
+  /** Starts guidance and shows the navigation fragment once a route has been determined. */
+  private fun onRouteResult(code: RouteStatus) {
+    when (code) {
+      RouteStatus.OK -> {
+        navigator?.let {
+          RouteStartPipeline.start(this@SwappingMapAndNavActivity, it) {
+            // Hide the toolbar to maximize the navigation UI
+            actionBar?.hide()
+            // And show the NavFragment to the user.
+            swapFragments(showNavigation = true)
           }
         }
-        RouteStatus.ROUTE_CANCELED -> // Return to top-down perspective
-        showToast("Route guidance cancelled.")
-        RouteStatus.NO_ROUTE_FOUND,
-        RouteStatus
-          .NETWORK_ERROR -> // TODO: Add logic to handle when a route could not be determined
-        showToast("Error starting guidance: $code")
-        else -> showToast("Error starting guidance: $code")
       }
+      RouteStatus.ROUTE_CANCELED -> // Return to top-down perspective
+      showToast("Route guidance cancelled.")
+      RouteStatus.NO_ROUTE_FOUND,
+      RouteStatus
+        .NETWORK_ERROR -> // TODO: Add logic to handle when a route could not be determined
+      showToast("Error starting guidance: $code")
+      else -> showToast("Error starting guidance: $code")
     }
   }
 
@@ -197,31 +329,191 @@ class SwappingMapAndNavActivity : AppCompatActivity() {
    * menu_swapping_map_and_nav.xml.
    */
   fun stopTripAndShowMapFragment(unused: MenuItem?) {
+    remainingStops = emptyList()
     navigator?.clearDestinations()
-    if (supportFragmentManager.findFragmentById(R.id.container) is SupportNavigationFragment) {
+    NavigationMetrics.onGuidanceStopped()
+    swapFragments(showNavigation = false)
+  }
+
+  /**
+   * Switches between cross-fading the fragments and detaching the fragment that is swapped out.
+   *
+   * This method is referenced by the "Cross-fade without detaching fragments" item in
+   * menu_swapping_map_and_nav.xml.
+   */
+  fun toggleKeepMapSurfaceAlive(item: MenuItem) {
+    if (showingNavigationFragment) {
+      showToast("Stop the trip before changing how fragments are swapped.")
+      return
+    }
+    keepMapSurfaceAlive = !keepMapSurfaceAlive
+    item.isChecked = keepMapSurfaceAlive
+    if (!keepMapSurfaceAlive && navigationFragment.isAdded && !navigationFragment.isDetached) {
+      // Return to the state the detaching mode expects: only the map fragment is attached.
+      supportFragmentManager.beginTransaction().detach(navigationFragment).commitNow()
+    }
+  }
+
+  private fun registerNavigationListeners(navigator: Navigator) {
+    // The registry drops the subscriber when this activity is destroyed.
+    NavigatorEventRegistry.forNavigator(navigator)
+      .subscribe(
+        this,
+        object : NavigatorEventRegistry.Subscriber {
+          override fun onArrival(arrivalEvent: ArrivalEvent) {
+            if (!arrivalEvent.isFinalDestination) {
+              // Move on to the next stop of a multi-stop trip.
+              showToast("User has arrived at a stop!")
+              remainingStops = remainingStops.drop(1)
+              navigator.continueToNextDestination()
+              navigator.startGuidance()
+              return
+            }
+
+            showToast("User has arrived at the destination!")
+            navigator.stopGuidance()
+
+            // Stop simulating vehicle movement.
+            if (BuildConfig.DEBUG) {
+              navigator.simulator?.unsetUserLocation()
+            }
+
+            // Switch back to the MapView.
+            stopTripAndShowMapFragment(/* unused= */ null)
+          }
+
+          override fun onRouteChanged(coalescedCount: Int) {
+            replanRemainingStops()
+          }
+        },
+      )
+  }
+
+  private fun swapFragments(showNavigation: Boolean) {
+    if (showingNavigationFragment == showNavigation) {
+      return
+    }
+    showingNavigationFragment = showNavigation
+    val swapStartNanos = SystemClock.elapsedRealtimeNanos()
+    val mapViewCreationsBefore = mapViewCreationCount
+    val navigationViewCreationsBefore = navigationViewCreationCount
+
+    // The swap is complete once the next frame with the new fragment is about to be drawn.
+    val logSwapOnNextFrame = {
+      val target = if (showNavigation) "navigation" else "map"
+      val mode = if (keepMapSurfaceAlive) "cross-fade" else "detach"
+      OneShotPreDrawListener.add(findViewById(R.id.container)) {
+        val swapMillis = (SystemClock.elapsedRealtimeNanos() - swapStartNanos) / 1_000_000
+        Log.i(
+          TAG,
+          "Swapped to $target in ${swapMillis}ms ($mode). Fragment views created by this swap: " +
+            "map ${mapViewCreationCount - mapViewCreationsBefore}, " +
+            "navigation ${navigationViewCreationCount - navigationViewCreationsBefore}. " +
+            "Total: map $mapViewCreationCount, navigation $navigationViewCreationCount",
+        )
+      }
+    }
+
+    if (keepMapSurfaceAlive) {
+      if (showNavigation) {
+        prewarmNavigationFragment()
+        crossFade(from = mapFragment, to = navigationFragment, onSwapped = logSwapOnNextFrame)
+      } else {
+        crossFade(from = navigationFragment, to = mapFragment, onSwapped = logSwapOnNextFrame)
+      }
+    } else if (showNavigation) {
+      detachOldFragmentAndAddOrAttachNewFragment(
+        /*fragmentToDetach=*/ mapFragment,
+        /*fragmentToAttach=*/ navigationFragment,
+        NAVIGATION_FRAGMENT_TAG,
+      )
+      logSwapOnNextFrame()
+    } else {
       detachOldFragmentAndAddOrAttachNewFragment(
         /*fragmentToDetach=*/ navigationFragment,
         /*fragmentToAttach=*/ mapFragment,
         MAP_FRAGMENT_TAG,
       )
+      logSwapOnNextFrame()
     }
   }
 
-  private fun registerArrivalListener() {
-    arrivalListener =
-      Navigator.ArrivalListener {
-        showToast("User has arrived at the destination!")
-        navigator?.stopGuidance()
+  // Adds the navigation fragment next to the map fragment if it isn't already, so its view and map
+  // surface are created before it is shown. It is kept paused and offscreen until it is faded in.
+  private fun prewarmNavigationFragment() {
+    val fragmentTransaction: FragmentTransaction = supportFragmentManager.beginTransaction()
+    if (navigationFragment.isDetached()) {
+      fragmentTransaction.attach(navigationFragment)
+    } else if (!navigationFragment.isAdded()) {
+      fragmentTransaction.add(R.id.container, navigationFragment, NAVIGATION_FRAGMENT_TAG)
+    } else {
+      return
+    }
+    fragmentTransaction.setMaxLifecycle(navigationFragment, Lifecycle.State.STARTED).commitNow()
+    if (!showingNavigationFragment) {
+      navigationFragment.view?.let { moveOffscreen(it) }
+    }
+  }
 
-        // Stop simulating vehicle movement.
-        if (BuildConfig.DEBUG) {
-          navigator?.simulator?.unsetUserLocation()
+  // Covers the outgoing map with a snapshot of it, then moves the incoming fragment onscreen and
+  // the outgoing one offscreen behind the snapshot, and fades the snapshot out. Once the fade has
+  // finished, the outgoing fragment is paused. It stays attached, so its map surface is kept alive
+  // for the next swap.
+  private fun crossFade(from: Fragment, to: Fragment, onSwapped: () -> Unit) {
+    val toView = to.view ?: return
+    val swap = ++swapCount
+    supportFragmentManager
+      .beginTransaction()
+      .setMaxLifecycle(to, Lifecycle.State.RESUMED)
+      .commitNow()
+    snapshotMap(from) { snapshot ->
+      if (swap != swapCount || isDestroyed) {
+        return@snapshotMap
+      }
+      swapSnapshot.animate().cancel()
+      if (snapshot != null) {
+        swapSnapshot.setImageBitmap(snapshot)
+        swapSnapshot.alpha = 1f
+        swapSnapshot.visibility = View.VISIBLE
+      }
+      toView.translationX = 0f
+      from.view?.let { moveOffscreen(it) }
+      onSwapped()
+      swapSnapshot
+        .animate()
+        .alpha(0f)
+        .setDuration(CROSS_FADE_DURATION_MILLIS)
+        .withEndAction {
+          swapSnapshot.visibility = View.GONE
+          swapSnapshot.setImageDrawable(null)
+          // The end action is skipped if the fade is cancelled by the next swap. Once the state
+          // has been saved, stopping the activity pauses the fragment anyway.
+          if (from.isAdded && !from.isDetached && !supportFragmentManager.isStateSaved) {
+            supportFragmentManager
+              .beginTransaction()
+              .setMaxLifecycle(from, Lifecycle.State.STARTED)
+              .commitNow()
+          }
         }
+        .start()
+    }
+  }
 
-        // Switch back to the MapView.
-        stopTripAndShowMapFragment(/* unused= */ null)
-      }
-    navigator?.addArrivalListener(arrivalListener)
+  // Invokes onSnapshot with a snapshot of the map of fragment, or with null if it has none.
+  private fun snapshotMap(fragment: Fragment, onSnapshot: (Bitmap?) -> Unit) {
+    val callback = OnMapReadyCallback { map -> map.snapshot { onSnapshot(it) } }
+    when (fragment) {
+      is SupportMapFragment -> fragment.getMapAsync(callback)
+      is SupportNavigationFragment -> fragment.getMapAsync(callback)
+      else -> onSnapshot(null)
+    }
+  }
+
+  // Moves a fragment's view past the edge of the screen. Unlike hiding it, this keeps its map
+  // surface, and as the fragments never overlap, the order of their surfaces doesn't matter.
+  private fun moveOffscreen(view: View) {
+    val metrics = resources.displayMetrics
+    view.translationX = maxOf(metrics.widthPixels, metrics.heightPixels).toFloat()
   }
 
   // Detaches old fragment and adds a new fragment to the activity if it's not added otherwise
@@ -234,8 +526,12 @@ class SwappingMapAndNavActivity : AppCompatActivity() {
     val fragmentTransaction: FragmentTransaction = supportFragmentManager.beginTransaction()
     fragmentTransaction.detach(fragmentToDetach)
     if (fragmentToAttach.isDetached()) {
-      // Attach the fragment if the fragment is already detached.
-      fragmentTransaction.attach(fragmentToAttach).commitNow()
+      // Attach the fragment if the fragment is already detached. It may have been paused while it
+      // was behind the other one in cross-fade mode.
+      fragmentTransaction
+        .attach(fragmentToAttach)
+        .setMaxLifecycle(fragmentToAttach, Lifecycle.State.RESUMED)
+        .commitNow()
     } else if (!fragmentToAttach.isAdded()) {
       // Add the fragment if it's not added.
       fragmentTransaction.add(R.id.container, fragmentToAttach, addFragmentTag).commitNow()
@@ -247,16 +543,17 @@ class SwappingMapAndNavActivity : AppCompatActivity() {
   }
 
   override fun onDestroy() {
-    if (arrivalListener != null) {
-      navigator?.removeArrivalListener(arrivalListener)
-    }
+    NavigationMetrics.onGuidanceStopped()
     navigator?.simulator?.unsetUserLocation()
     navigator?.cleanup()
+    supportFragmentManager.unregisterFragmentLifecycleCallbacks(fragmentViewCreationCounter)
     super.onDestroy()
   }
 
   private companion object {
+    const val TAG = "SwappingMapAndNavActivity"
     const val PLACE_PICKER_REQUEST = 1
+    const val CROSS_FADE_DURATION_MILLIS = 250L
     const val MAP_FRAGMENT_TAG = "map_fragment"
     const val NAVIGATION_FRAGMENT_TAG = "navigation_fragment"
 
@@ -276,8 +573,9 @@ class SwappingMapAndNavActivity : AppCompatActivity() {
         val swappingMapAndNavActivity: SwappingMapAndNavActivity? = activity.get()
         if (swappingMapAndNavActivity != null) {
           swappingMapAndNavActivity.navigator = navigator
-          // Register an arrival listener that returns back to a top-down map once the trip is over.
-          swappingMapAndNavActivity.registerArrivalListener()
+          // Register listeners that move on to the next stop of a multi-stop trip, and return back
+          // to a top-down map once the trip is over.
+          swappingMapAndNavActivity.registerNavigationListeners(navigator)
         }
       }
 
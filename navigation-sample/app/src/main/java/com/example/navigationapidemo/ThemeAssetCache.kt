@@ -0,0 +1,151 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.content.Context
+import android.content.res.Resources
+import android.graphics.Color
+import android.graphics.drawable.Drawable
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
+import android.util.SparseArray
+import androidx.annotation.ColorInt
+import androidx.annotation.DrawableRes
+import androidx.core.content.res.ResourcesCompat
+import androidx.lifecycle.LiveData
+import androidx.lifecycle.MutableLiveData
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Holds the day and night variants of the custom navigation UI assets: the maneuver icons and
+ * colors of the nav info header.
+ *
+ * Both variants are built once, on a background thread, when guidance starts. After that, a night
+ * mode switch (for example when the driver enters a tunnel) only swaps which variant [assets]
+ * holds, without decoding or tinting anything.
+ */
+object ThemeAssetCache {
+  /** The assets of one night mode. */
+  class ThemeAssets(
+    val isNight: Boolean,
+    @ColorInt val currentStepColor: Int,
+    @ColorInt val stepPreviewColor: Int,
+    private val maneuverIcons: SparseArray<Drawable.ConstantState>,
+  ) {
+    /**
+     * Returns the icon for [drawableRes], sharing its bitmap with the cached icon if there is one.
+     * Falls back to loading the resource if the icon wasn't preloaded.
+     */
+    fun getManeuverIcon(context: Context, @DrawableRes drawableRes: Int): Drawable? =
+      maneuverIcons[drawableRes]?.newDrawable(context.resources)
+        ?: loadIcon(context.resources, drawableRes, isNight)
+  }
+
+  private const val TAG = "ThemeAssetCache"
+
+  @ColorInt private val DAY_CURRENT_STEP_COLOR = Color.parseColor("#4285F4")
+  @ColorInt private val DAY_STEP_PREVIEW_COLOR = Color.parseColor("#617BA6")
+  @ColorInt private val NIGHT_CURRENT_STEP_COLOR = Color.parseColor("#174EA6")
+  @ColorInt private val NIGHT_STEP_PREVIEW_COLOR = Color.parseColor("#3C4A63")
+
+  /** Dims the white maneuver icons at night. */
+  @ColorInt private val NIGHT_ICON_TINT = Color.parseColor("#BDC1C6")
+
+  private val executor = Executors.newSingleThreadExecutor()
+  private val mainHandler = Handler(Looper.getMainLooper())
+  private val preloadStarted = AtomicBoolean()
+  private val assetsLiveData = MutableLiveData(emptyAssets(isNight = false))
+
+  // Written once by the preload thread, read on the main thread.
+  @Volatile private var dayAssets: ThemeAssets? = null
+  @Volatile private var nightAssets: ThemeAssets? = null
+
+  /** The assets of the current night mode, updated on the main thread. */
+  val assets: LiveData<ThemeAssets> = assetsLiveData
+
+  /**
+   * Builds the day and night assets on a background thread, if that hasn't happened yet. The
+   * current variant is published to [assets] once they are ready.
+   */
+  fun preload(context: Context) {
+    if (!preloadStarted.compareAndSet(false, true)) {
+      return
+    }
+    val resources = context.applicationContext.resources
+    executor.execute {
+      val startMillis = SystemClock.elapsedRealtime()
+      val day = buildAssets(resources, isNight = false)
+      val night = buildAssets(resources, isNight = true)
+      dayAssets = day
+      nightAssets = night
+      Log.d(TAG, "Preloaded theme assets in ${SystemClock.elapsedRealtime() - startMillis} ms")
+      mainHandler.post {
+        // The night mode may have changed while the assets were being built.
+        val isNight = assetsLiveData.value?.isNight ?: false
+        assetsLiveData.value = if (isNight) night else day
+      }
+    }
+  }
+
+  /**
+   * Switches [assets] to the variant for [isNight]. Must be called on the main thread, e.g. from
+   * the Navigation SDK's night mode changed listener.
+   */
+  fun setNightMode(isNight: Boolean) {
+    if (assetsLiveData.value?.isNight == isNight) {
+      return
+    }
+    val cached = if (isNight) nightAssets else dayAssets
+    if (cached == null) {
+      Log.d(TAG, "Theme assets not preloaded yet, icons are loaded on demand")
+    }
+    assetsLiveData.value = cached ?: emptyAssets(isNight)
+  }
+
+  private fun buildAssets(resources: Resources, isNight: Boolean): ThemeAssets {
+    val maneuverIcons = SparseArray<Drawable.ConstantState>()
+    for (drawableRes in ManeuverUtils.maneuverIconResIds) {
+      loadIcon(resources, drawableRes, isNight)?.constantState?.let {
+        maneuverIcons.put(drawableRes, it)
+      }
+    }
+    return createAssets(isNight, maneuverIcons)
+  }
+
+  private fun emptyAssets(isNight: Boolean) = createAssets(isNight, SparseArray())
+
+  private fun createAssets(isNight: Boolean, maneuverIcons: SparseArray<Drawable.ConstantState>) =
+    ThemeAssets(
+      isNight = isNight,
+      currentStepColor = if (isNight) NIGHT_CURRENT_STEP_COLOR else DAY_CURRENT_STEP_COLOR,
+      stepPreviewColor = if (isNight) NIGHT_STEP_PREVIEW_COLOR else DAY_STEP_PREVIEW_COLOR,
+      maneuverIcons = maneuverIcons,
+    )
+
+  private fun loadIcon(resources: Resources, @DrawableRes drawableRes: Int, isNight: Boolean) =
+    ResourcesCompat.getDrawable(resources, drawableRes, /* theme= */ null)?.let { icon ->
+      if (isNight) {
+        // Mutate, so the tint doesn't leak into the day icon that shares the same resource.
+        icon.mutate().apply { setTint(NIGHT_ICON_TINT) }
+      } else {
+        icon
+      }
+    }
+}
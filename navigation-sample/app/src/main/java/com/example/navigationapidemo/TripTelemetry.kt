@@ -0,0 +1,333 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.app.Application
+import android.location.Location
+import android.os.SystemClock
+import android.util.Log
+import androidx.annotation.MainThread
+import com.google.android.libraries.navigation.NavigationApi
+import com.google.android.libraries.navigation.RoadSnappedLocationProvider
+import kotlin.math.cos
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+
+/**
+ * Records the road-snapped track of the current trip in a bounded amount of memory.
+ *
+ * Every location reported by the [RoadSnappedLocationProvider] during guidance goes through a
+ * streaming simplifier, which drops points that lie within [INITIAL_TOLERANCE_METERS] of the
+ * straight line between the points that are kept. Kept points are appended to a [TrackBuffer] as
+ * varint-encoded deltas, which takes a few bytes per point instead of the 24 bytes of a raw
+ * latitude, longitude and timestamp.
+ *
+ * The buffer never grows past [MAX_TRACK_BYTES]. When it is full, the track recorded so far is
+ * simplified again with twice the tolerance, and recording continues with the coarser tolerance.
+ *
+ * In debug builds, [stop] logs the compression ratio and the average cost of recording a point.
+ * The recording itself is done by a [TrackRecorder], which `TripTelemetryBenchmark` measures on
+ * synthetic drives.
+ */
+object TripTelemetry {
+  /** A kept point of the track. */
+  data class TrackPoint(val latitude: Double, val longitude: Double, val elapsedMillis: Long)
+
+  private const val TAG = "TripTelemetry"
+  private const val INITIAL_TOLERANCE_METERS = 5.0
+  private const val MAX_TRACK_BYTES = 32 * 1024
+
+  /** The size of a point before compression: two doubles and a long. */
+  private const val RAW_POINT_BYTES = 24
+
+  private var locationProvider: RoadSnappedLocationProvider? = null
+  private val recorder = TrackRecorder()
+  private var tripStartMillis = 0L
+  private var recordingNanos = 0L
+
+  private val locationListener =
+    object : RoadSnappedLocationProvider.LocationListener {
+      override fun onLocationChanged(location: Location) {
+        val startNanos = SystemClock.elapsedRealtimeNanos()
+        if (tripStartMillis == 0L) {
+          tripStartMillis = location.time
+        }
+        recorder.add(
+          TrackPoint(location.latitude, location.longitude, location.time - tripStartMillis)
+        )
+        recordingNanos += SystemClock.elapsedRealtimeNanos() - startNanos
+      }
+    }
+
+  /** Starts recording a new trip, discarding the previous one. Has no effect while recording. */
+  @MainThread
+  fun start(application: Application) {
+    if (locationProvider != null) {
+      return
+    }
+    val provider = NavigationApi.getRoadSnappedLocationProvider(application) ?: return
+    recorder.clear()
+    tripStartMillis = 0L
+    recordingNanos = 0L
+    provider.addLocationListener(locationListener)
+    locationProvider = provider
+  }
+
+  /** Stops recording, keeping the recorded track available through [track]. */
+  @MainThread
+  fun stop() {
+    val provider = locationProvider ?: return
+    provider.removeLocationListener(locationListener)
+    locationProvider = null
+    recorder.finish()
+    val receivedPoints = recorder.receivedPoints
+    if (BuildConfig.DEBUG && receivedPoints > 0) {
+      Log.d(
+        TAG,
+        "Recorded ${recorder.keptPoints} of $receivedPoints points in ${recorder.trackBytes} " +
+          "bytes (${"%.1f".format(recorder.compressionRatio)}x smaller than raw), " +
+          "${recordingNanos / receivedPoints}ns per point, " +
+          "${recorder.recompressions} recompressions, ${recorder.toleranceMeters}m tolerance",
+      )
+    }
+  }
+
+  /** Returns the kept points of the current or last trip. */
+  @MainThread fun track(): List<TrackPoint> = recorder.track()
+
+  /** Simplifies and compresses a track one point at a time, in at most [maxTrackBytes]. */
+  internal class TrackRecorder(maxTrackBytes: Int = MAX_TRACK_BYTES) {
+    private var simplifier = TrackSimplifier(INITIAL_TOLERANCE_METERS)
+    private val buffer = TrackBuffer(maxTrackBytes)
+
+    /** The number of points added since the recorder was created or cleared. */
+    var receivedPoints = 0
+      private set
+
+    /** The number of times the track was simplified again with a coarser tolerance. */
+    var recompressions = 0
+      private set
+
+    /** The number of points kept in the track. */
+    val keptPoints: Int
+      get() = buffer.pointCount
+
+    /** The size of the compressed track. */
+    val trackBytes: Int
+      get() = buffer.size
+
+    /** The tolerance new points are simplified with. */
+    val toleranceMeters: Double
+      get() = simplifier.toleranceMeters
+
+    /** How many times smaller the track is than the raw points added, or 0 if there are none. */
+    val compressionRatio: Double
+      get() =
+        if (buffer.size == 0) 0.0 else receivedPoints * RAW_POINT_BYTES.toDouble() / buffer.size
+
+    fun add(point: TrackPoint) {
+      receivedPoints++
+      simplifier.add(point, ::store)
+    }
+
+    /** Keeps the last point added, which ends the track. */
+    fun finish() {
+      simplifier.finish(::store)
+    }
+
+    fun track(): List<TrackPoint> = buffer.decode()
+
+    fun clear() {
+      simplifier = TrackSimplifier(INITIAL_TOLERANCE_METERS)
+      buffer.clear()
+      receivedPoints = 0
+      recompressions = 0
+    }
+
+    private fun store(point: TrackPoint) {
+      while (!buffer.append(point)) {
+        // Simplify what was recorded so far with a coarser tolerance, and keep recording with it.
+        val coarser = TrackSimplifier(simplifier.toleranceMeters * 2)
+        val kept = mutableListOf<TrackPoint>()
+        buffer.decode().forEach { coarser.add(it, kept::add) }
+        coarser.finish(kept::add)
+        buffer.clear()
+        kept.forEach { buffer.append(it) }
+        simplifier.toleranceMeters = coarser.toleranceMeters
+        recompressions++
+      }
+    }
+  }
+
+  /**
+   * A streaming variant of the Douglas–Peucker algorithm, also known as the opening window
+   * algorithm.
+   *
+   * Points are held in a window after the last kept point (the anchor) for as long as all of them
+   * lie within [toleranceMeters] of the line from the anchor to the newest point. Once one doesn't,
+   * the point before the newest one is kept and becomes the new anchor. The window is bounded, so
+   * each point costs at most [MAX_WINDOW_SIZE] distance computations.
+   */
+  private class TrackSimplifier(var toleranceMeters: Double) {
+    private var anchor: TrackPoint? = null
+    private val window = ArrayList<TrackPoint>(MAX_WINDOW_SIZE)
+
+    fun add(point: TrackPoint, keep: (TrackPoint) -> Unit) {
+      val currentAnchor = anchor
+      if (currentAnchor == null) {
+        anchor = point
+        keep(point)
+        return
+      }
+      if (
+        window.size == MAX_WINDOW_SIZE ||
+          window.any { distanceToSegmentMeters(it, currentAnchor, point) > toleranceMeters }
+      ) {
+        val newAnchor = window.last()
+        keep(newAnchor)
+        anchor = newAnchor
+        window.clear()
+      }
+      window.add(point)
+    }
+
+    /** Keeps the newest point, which ends the track. */
+    fun finish(keep: (TrackPoint) -> Unit) {
+      if (window.isNotEmpty()) {
+        val last = window.last()
+        keep(last)
+        anchor = last
+        window.clear()
+      }
+    }
+
+    private companion object {
+      const val MAX_WINDOW_SIZE = 32
+      const val METERS_PER_DEGREE = 111_320.0
+
+      // Projects the points onto a plane tangent at the segment start, which is accurate enough
+      // over the few hundred meters a window spans.
+      fun distanceToSegmentMeters(point: TrackPoint, start: TrackPoint, end: TrackPoint): Double {
+        val metersPerLongitudeDegree = METERS_PER_DEGREE * cos(Math.toRadians(start.latitude))
+        val px = (point.longitude - start.longitude) * metersPerLongitudeDegree
+        val py = (point.latitude - start.latitude) * METERS_PER_DEGREE
+        val ex = (end.longitude - start.longitude) * metersPerLongitudeDegree
+        val ey = (end.latitude - start.latitude) * METERS_PER_DEGREE
+        val lengthSquared = ex * ex + ey * ey
+        val t = if (lengthSquared == 0.0) 0.0 else (px * ex + py * ey) / lengthSquared
+        val clampedT = t.coerceIn(0.0, 1.0)
+        val dx = px - clampedT * ex
+        val dy = py - clampedT * ey
+        return sqrt(dx * dx + dy * dy)
+      }
+    }
+  }
+
+  /**
+   * An append-only, fixed-capacity buffer of track points.
+   *
+   * Each point is stored as the difference from the previous point: latitude and longitude in
+   * millionths of a degree (about 11 cm) as zigzag varints, and the elapsed time in milliseconds as
+   * a varint. Consecutive points a few meters apart take about 6 bytes.
+   */
+  private class TrackBuffer(capacity: Int) {
+    private val bytes = ByteArray(capacity)
+    private val scratch = ByteArray(MAX_POINT_BYTES)
+
+    var size = 0
+      private set
+
+    var pointCount = 0
+      private set
+
+    private var lastLatitudeE6 = 0
+    private var lastLongitudeE6 = 0
+    private var lastElapsedMillis = 0L
+
+    /** Appends [point], or returns false without changing anything if it doesn't fit. */
+    fun append(point: TrackPoint): Boolean {
+      val latitudeE6 = (point.latitude * 1e6).roundToInt()
+      val longitudeE6 = (point.longitude * 1e6).roundToInt()
+      var length = writeVarint(scratch, 0, zigzag((latitudeE6 - lastLatitudeE6).toLong()))
+      length = writeVarint(scratch, length, zigzag((longitudeE6 - lastLongitudeE6).toLong()))
+      length = writeVarint(scratch, length, zigzag(point.elapsedMillis - lastElapsedMillis))
+      if (size + length > bytes.size) {
+        return false
+      }
+      System.arraycopy(scratch, 0, bytes, size, length)
+      size += length
+      pointCount++
+      lastLatitudeE6 = latitudeE6
+      lastLongitudeE6 = longitudeE6
+      lastElapsedMillis = point.elapsedMillis
+      return true
+    }
+
+    fun clear() {
+      size = 0
+      pointCount = 0
+      lastLatitudeE6 = 0
+      lastLongitudeE6 = 0
+      lastElapsedMillis = 0L
+    }
+
+    fun decode(): List<TrackPoint> {
+      val points = ArrayList<TrackPoint>(pointCount)
+      var position = 0
+      var latitudeE6 = 0L
+      var longitudeE6 = 0L
+      var elapsedMillis = 0L
+      fun readZigzag(): Long {
+        var value = 0L
+        var shift = 0
+        while (true) {
+          val byte = bytes[position++].toInt()
+          value = value or ((byte and 0x7F).toLong() shl shift)
+          if (byte and 0x80 == 0) {
+            return (value ushr 1) xor -(value and 1)
+          }
+          shift += 7
+        }
+      }
+      while (position < size) {
+        latitudeE6 += readZigzag()
+        longitudeE6 += readZigzag()
+        elapsedMillis += readZigzag()
+        points.add(TrackPoint(latitudeE6 / 1e6, longitudeE6 / 1e6, elapsedMillis))
+      }
+      return points
+    }
+
+    private companion object {
+      /** Three varints of at most 10 bytes each. */
+      const val MAX_POINT_BYTES = 30
+
+      fun zigzag(value: Long) = (value shl 1) xor (value shr 63)
+
+      fun writeVarint(target: ByteArray, offset: Int, value: Long): Int {
+        var remaining = value
+        var position = offset
+        while (remaining and 0x7FL.inv() != 0L) {
+          target[position++] = ((remaining and 0x7F) or 0x80).toByte()
+          remaining = remaining ushr 7
+        }
+        target[position++] = remaining.toByte()
+        return position
+      }
+    }
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo.layoutdelegate;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import androidx.annotation.Nullable;
+import com.google.android.libraries.navigation.layoutcustomization.ActiveGuidanceUiState;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationLayoutDelegate;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationReadyUiState;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationUiParent;
+import com.google.android.libraries.navigation.layoutcustomization.UiState;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link NavigationLayoutDelegate} that wraps another delegate and measures the cost of every
+ * UI state transition it handles.
+ *
+ * <p>For each transition, the wall-clock time spent in the wrapped delegate and the number of
+ * objects it allocated on the UI thread are recorded. When given a counter of {@code
+ * ConstraintSet.applyTo} calls, the number of constraint sets each transition applied is recorded
+ * as well, since every one of them re-lays out the whole navigation UI. A warning is logged
+ * whenever a single transition exceeds the configured budget, which makes it easy to spot a
+ * delegate that regresses while iterating on a layout. Call {@link #logStats()} to print the
+ * aggregated numbers, or {@link #checkWithinBudget()} to fail a run that went over budget; {@code
+ * LayoutDelegateProfilingTest} drives every sample delegate through its states this way, counting
+ * constraint sets with a Robolectric shadow.
+ *
+ * <p>Allocation counting relies on {@link Debug#startAllocCounting()}, which is only enabled for
+ * the duration of each measured call but still slows the process down while it is. Only wrap a
+ * delegate with this class in debug builds and tests.
+ */
+public class ProfilingLayoutDelegate extends NavigationLayoutDelegate {
+  private static final String TAG = "LayoutDelegateProfiler";
+
+  /** The default per-transition budget: a single frame at 60 fps. */
+  public static final long DEFAULT_BUDGET_MILLIS = 16;
+
+  /**
+   * The number of {@code ConstraintSet}s a single transition may apply: every sample delegate moves
+   * the layout to its new state with one.
+   */
+  public static final int CONSTRAINT_SET_APPLY_BUDGET = 1;
+
+  /** The UI state transitions reported by this class. */
+  public enum Transition {
+    ENTER_NAVIGATION_READY,
+    LEAVE_NAVIGATION_READY,
+    ENTER_ACTIVE_GUIDANCE,
+    LEAVE_ACTIVE_GUIDANCE,
+    SHOW_PROMPT,
+    CHANGE_PROMPT,
+    HIDE_PROMPT,
+    SIZE_CHANGED_WIDE_MODE,
+    SIZE_CHANGED_NARROW_MODE,
+  }
+
+  /** Aggregated measurements for a single {@link Transition}. */
+  public static final class TransitionStats {
+    private int count;
+    private long totalNanos;
+    private long maxNanos;
+    private long totalAllocations;
+    private long totalConstraintSetApplies;
+    private long maxConstraintSetApplies;
+    private int overBudgetCount;
+
+    public int getCount() {
+      return count;
+    }
+
+    public long getAverageNanos() {
+      return count == 0 ? 0 : totalNanos / count;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    public long getAverageAllocations() {
+      return count == 0 ? 0 : totalAllocations / count;
+    }
+
+    /** Returns the average number of constraint sets applied, or 0 if they are not counted. */
+    public double getAverageConstraintSetApplies() {
+      return count == 0 ? 0 : (double) totalConstraintSetApplies / count;
+    }
+
+    /** Returns the maximum number of constraint sets applied, or 0 if they are not counted. */
+    public long getMaxConstraintSetApplies() {
+      return maxConstraintSetApplies;
+    }
+
+    public int getOverBudgetCount() {
+      return overBudgetCount;
+    }
+  }
+
+  private final NavigationLayoutDelegate delegate;
+  private final String delegateName;
+  private final long budgetNanos;
+  @Nullable private final LongSupplier constraintSetApplyCounter;
+  private final Map<Transition, TransitionStats> stats = new EnumMap<>(Transition.class);
+
+  private long startConstraintSetApplies;
+
+  public ProfilingLayoutDelegate(NavigationLayoutDelegate delegate) {
+    this(delegate, DEFAULT_BUDGET_MILLIS);
+  }
+
+  public ProfilingLayoutDelegate(NavigationLayoutDelegate delegate, long budgetMillis) {
+    this(delegate, budgetMillis, null);
+  }
+
+  /**
+   * Creates a delegate that also budgets the {@code ConstraintSet}s applied per transition.
+   *
+   * @param constraintSetApplyCounter returns the number of {@code ConstraintSet.applyTo} calls
+   *     made so far on the UI thread; ConstraintLayout does not count them itself, so this is
+   *     typically backed by an instrumented build or a Robolectric shadow
+   */
+  public ProfilingLayoutDelegate(
+      NavigationLayoutDelegate delegate,
+      long budgetMillis,
+      @Nullable LongSupplier constraintSetApplyCounter) {
+    this.delegate = delegate;
+    this.delegateName = delegate.getClass().getSimpleName();
+    this.budgetNanos = budgetMillis * 1_000_000L;
+    this.constraintSetApplyCounter = constraintSetApplyCounter;
+    for (Transition transition : Transition.values()) {
+      stats.put(transition, new TransitionStats());
+    }
+  }
+
+  @Override
+  public void onEnterNavigationReady(
+      NavigationUiParent navigationUiParent, NavigationReadyUiState newState) {
+    long startNanos = begin();
+    delegate.onEnterNavigationReady(navigationUiParent, newState);
+    end(Transition.ENTER_NAVIGATION_READY, startNanos);
+  }
+
+  @Override
+  public void onLeaveNavigationReady(
+      NavigationUiParent navigationUiParent, NavigationReadyUiState oldState) {
+    long startNanos = begin();
+    delegate.onLeaveNavigationReady(navigationUiParent, oldState);
+    end(Transition.LEAVE_NAVIGATION_READY, startNanos);
+  }
+
+  @Override
+  public void onEnterActiveGuidance(
+      NavigationUiParent navigationUiParent,
+      NavigationReadyUiState oldState,
+      ActiveGuidanceUiState newState) {
+    long startNanos = begin();
+    delegate.onEnterActiveGuidance(navigationUiParent, oldState, newState);
+    end(Transition.ENTER_ACTIVE_GUIDANCE, startNanos);
+  }
+
+  @Override
+  public void onLeaveActiveGuidance(
+      NavigationUiParent navigationUiParent,
+      ActiveGuidanceUiState oldState,
+      NavigationReadyUiState newState) {
+    long startNanos = begin();
+    delegate.onLeaveActiveGuidance(navigationUiParent, oldState, newState);
+    end(Transition.LEAVE_ACTIVE_GUIDANCE, startNanos);
+  }
+
+  @Override
+  public void onShowPrompt(NavigationUiParent navigationUiParent, View newPrompt) {
+    long startNanos = begin();
+    delegate.onShowPrompt(navigationUiParent, newPrompt);
+    end(Transition.SHOW_PROMPT, startNanos);
+  }
+
+  @Override
+  public void onChangePrompt(
+      NavigationUiParent navigationUiParent, View oldPrompt, View newPrompt) {
+    long startNanos = begin();
+    delegate.onChangePrompt(navigationUiParent, oldPrompt, newPrompt);
+    end(Transition.CHANGE_PROMPT, startNanos);
+  }
+
+  @Override
+  public void onHidePrompt(NavigationUiParent navigationUiParent, View oldPrompt) {
+    long startNanos = begin();
+    delegate.onHidePrompt(navigationUiParent, oldPrompt);
+    end(Transition.HIDE_PROMPT, startNanos);
+  }
+
+  @Override
+  public void onSizeChanged(NavigationUiParent navigationUiParent, UiState state) {
+    long startNanos = begin();
+    delegate.onSizeChanged(navigationUiParent, state);
+    end(
+        state.isWideMode()
+            ? Transition.SIZE_CHANGED_WIDE_MODE
+            : Transition.SIZE_CHANGED_NARROW_MODE,
+        startNanos);
+  }
+
+  /** Returns the aggregated measurements recorded so far for the given transition. */
+  public TransitionStats getStats(Transition transition) {
+    return stats.get(transition);
+  }
+
+  /** Returns the number of transitions that exceeded the budget, across all transition types. */
+  public int getOverBudgetCount() {
+    int overBudgetCount = 0;
+    for (TransitionStats transitionStats : stats.values()) {
+      overBudgetCount += transitionStats.overBudgetCount;
+    }
+    return overBudgetCount;
+  }
+
+  /** Logs the aggregated measurements of every transition that has been observed at least once. */
+  public void logStats() {
+    for (Map.Entry<Transition, TransitionStats> entry : stats.entrySet()) {
+      TransitionStats transitionStats = entry.getValue();
+      if (transitionStats.count == 0) {
+        continue;
+      }
+      Log.i(
+          TAG,
+          String.format(
+              Locale.US,
+              "%s %s: count=%d avg=%.2fms max=%.2fms avgAllocations=%d"
+                  + " avgConstraintSetApplies=%.2f maxConstraintSetApplies=%d overBudget=%d",
+              delegateName,
+              entry.getKey(),
+              transitionStats.count,
+              transitionStats.getAverageNanos() / 1e6,
+              transitionStats.maxNanos / 1e6,
+              transitionStats.getAverageAllocations(),
+              transitionStats.getAverageConstraintSetApplies(),
+              transitionStats.maxConstraintSetApplies,
+              transitionStats.overBudgetCount));
+    }
+  }
+
+  /**
+   * Throws an {@link IllegalStateException} listing every transition that exceeded the budget, if
+   * any did.
+   */
+  public void checkWithinBudget() {
+    StringBuilder overBudgetTransitions = new StringBuilder();
+    for (Map.Entry<Transition, TransitionStats> entry : stats.entrySet()) {
+      TransitionStats transitionStats = entry.getValue();
+      if (transitionStats.overBudgetCount == 0) {
+        continue;
+      }
+      overBudgetTransitions.append(
+          String.format(
+              Locale.US,
+              "%n  %s: %d of %d over budget, max=%.2fms maxConstraintSetApplies=%d",
+              entry.getKey(),
+              transitionStats.overBudgetCount,
+              transitionStats.count,
+              transitionStats.maxNanos / 1e6,
+              transitionStats.maxConstraintSetApplies));
+    }
+    if (overBudgetTransitions.length() > 0) {
+      throw new IllegalStateException(
+          String.format(
+              Locale.US,
+              "%s exceeded the %dms or %d constraint set budget:%s",
+              delegateName,
+              budgetNanos / 1_000_000L,
+              CONSTRAINT_SET_APPLY_BUDGET,
+              overBudgetTransitions));
+    }
+  }
+
+  /**
+   * Starts counting this thread's allocations from zero, remembers the constraint sets applied so
+   * far, and returns the start time.
+   */
+  @SuppressWarnings("deprecation") // Debug allocation counting is only meant for debug builds.
+  private long begin() {
+    startConstraintSetApplies = countConstraintSetApplies();
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    return SystemClock.elapsedRealtimeNanos();
+  }
+
+  @SuppressWarnings("deprecation") // Debug allocation counting is only meant for debug builds.
+  private void end(Transition transition, long startNanos) {
+    long elapsedNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+    Debug.stopAllocCounting();
+    long allocations = Debug.getThreadAllocCount();
+    long constraintSetApplies = countConstraintSetApplies() - startConstraintSetApplies;
+
+    TransitionStats transitionStats = stats.get(transition);
+    transitionStats.count++;
+    transitionStats.totalNanos += elapsedNanos;
+    transitionStats.maxNanos = Math.max(transitionStats.maxNanos, elapsedNanos);
+    transitionStats.totalAllocations += allocations;
+    transitionStats.totalConstraintSetApplies += constraintSetApplies;
+    transitionStats.maxConstraintSetApplies =
+        Math.max(transitionStats.maxConstraintSetApplies, constraintSetApplies);
+
+    if (elapsedNanos > budgetNanos || constraintSetApplies > CONSTRAINT_SET_APPLY_BUDGET) {
+      transitionStats.overBudgetCount++;
+      Log.w(
+          TAG,
+          String.format(
+              Locale.US,
+              "%s %s took %.2fms (%d allocations) and applied %d constraint sets, over the %dms or"
+                  + " %d constraint set budget",
+              delegateName,
+              transition,
+              elapsedNanos / 1e6,
+              allocations,
+              constraintSetApplies,
+              budgetNanos / 1_000_000L,
+              CONSTRAINT_SET_APPLY_BUDGET));
+    }
+  }
+
+  private long countConstraintSetApplies() {
+    return constraintSetApplyCounter == null ? 0 : constraintSetApplyCounter.getAsLong();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.Handler
+import android.os.Looper
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.navigation.ArrivalEvent
+import com.google.android.libraries.navigation.ListenableResultFuture
+import com.google.android.libraries.navigation.Navigator
+import com.google.android.libraries.navigation.Navigator.RouteStatus
+import com.google.android.libraries.navigation.Simulator
+import com.google.android.libraries.navigation.Waypoint
+import org.mockito.Mockito.mock
+
+/**
+ * A stand-in [Navigator] for JVM tests, which only implements what guidance code in this app uses.
+ *
+ * Routes are computed instantly and always succeed. While guidance is running, moving the simulated
+ * vehicle to the destination reports an arrival, and moving it anywhere else reports a route
+ * change, as the real Navigator does once it has rerouted. Listeners are called on the main looper,
+ * after the call that triggered them has returned.
+ */
+class FakeNavigator {
+  private val handler = Handler(Looper.getMainLooper())
+  private val arrivalListeners = mutableListOf<Navigator.ArrivalListener>()
+  private val routeChangedListeners = mutableListOf<Navigator.RouteChangedListener>()
+  private var destination: LatLng? = null
+  private var userLocation: LatLng? = null
+  private var guidanceRunning = false
+
+  /** The number of route changes reported so far. */
+  var routeChangedCount = 0
+    private set
+
+  /** The number of arrivals reported so far. */
+  var arrivalCount = 0
+    private set
+
+  private val simulator: Simulator = fakeOf { name, args ->
+    when (name) {
+      "setUserLocation" -> moveVehicle(args[0] as LatLng)
+      "unsetUserLocation" -> {
+        userLocation = null
+      }
+      else -> null
+    }
+  }
+
+  val navigator: Navigator = fakeOf { name, args ->
+    when (name) {
+      "addArrivalListener" -> arrivalListeners.add(args[0] as Navigator.ArrivalListener)
+      "removeArrivalListener" -> arrivalListeners.remove(args[0])
+      "addRouteChangedListener" ->
+        routeChangedListeners.add(args[0] as Navigator.RouteChangedListener)
+      "removeRouteChangedListener" -> routeChangedListeners.remove(args[0])
+      "getSimulator" -> simulator
+      "setDestination" -> setDestination(args[0] as Waypoint)
+      "clearDestinations" -> {
+        destination = null
+        guidanceRunning = false
+      }
+      "startGuidance" -> {
+        guidanceRunning = destination != null
+      }
+      "stopGuidance" -> {
+        guidanceRunning = false
+      }
+      "getTraveledRoute" -> listOfNotNull(userLocation)
+      else -> null
+    }
+  }
+
+  /** Reports an arrival to the Navigator's arrival listeners. */
+  fun reportArrival() {
+    arrivalCount++
+    val arrivalEvent = mock(ArrivalEvent::class.java)
+    handler.post { arrivalListeners.toList().forEach { it.onArrival(arrivalEvent) } }
+  }
+
+  private fun reportRouteChanged() {
+    routeChangedCount++
+    handler.post { routeChangedListeners.toList().forEach { it.onRouteChanged() } }
+  }
+
+  private fun moveVehicle(location: LatLng) {
+    userLocation = location
+    if (!guidanceRunning) {
+      return
+    }
+    if (location == destination) {
+      reportArrival()
+    } else {
+      reportRouteChanged()
+    }
+  }
+
+  private fun setDestination(waypoint: Waypoint): ListenableResultFuture<RouteStatus> {
+    destination = waypoint.position
+    return fakeOf { name, args ->
+      when (name) {
+        "setOnResultListener" -> {
+          @Suppress("UNCHECKED_CAST")
+          val listener = args[0] as ListenableResultFuture.OnResultListener<RouteStatus>
+          handler.post { listener.onResult(RouteStatus.OK) }
+        }
+        "get" -> RouteStatus.OK
+        "isDone" -> true
+        else -> null
+      }
+    }
+  }
+}
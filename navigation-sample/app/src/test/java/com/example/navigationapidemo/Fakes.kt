@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Proxy
+
+/**
+ * Creates a dynamic proxy implementing [T], which forwards every call to [handler] with the method
+ * name and arguments. Calls that [handler] returns nothing for return the default value of the
+ * method's return type.
+ */
+internal inline fun <reified T> fakeOf(crossinline handler: (String, Array<out Any?>) -> Any?): T {
+  val invocationHandler = InvocationHandler { proxy, method, args ->
+    when (method.name) {
+      "equals" -> proxy === args?.get(0)
+      "hashCode" -> System.identityHashCode(proxy)
+      "toString" -> "Fake${T::class.java.simpleName}"
+      else ->
+        handler(method.name, args ?: emptyArray()).takeUnless { it == null || it == Unit }
+          ?: defaultValue(method.returnType)
+    }
+  }
+  val type = T::class.java
+  return type.cast(Proxy.newProxyInstance(type.classLoader, arrayOf(type), invocationHandler))
+}
+
+internal fun defaultValue(type: Class<*>): Any? =
+  when (type) {
+    Boolean::class.javaPrimitiveType -> false
+    Int::class.javaPrimitiveType -> 0
+    Long::class.javaPrimitiveType -> 0L
+    Float::class.javaPrimitiveType -> 0f
+    Double::class.javaPrimitiveType -> 0.0
+    else -> null
+  }
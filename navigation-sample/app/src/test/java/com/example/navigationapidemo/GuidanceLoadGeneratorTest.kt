@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo
+
+import android.os.Looper
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleOwner
+import androidx.lifecycle.LifecycleRegistry
+import com.example.navigationapidemo.GuidanceLoadGenerator.Scenario
+import com.example.navigationapidemo.GuidanceLoadGenerator.ScenarioReport
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.navigation.ArrivalEvent
+import com.google.android.libraries.navigation.Navigator.RouteStatus
+import java.time.Duration
+import kotlin.random.Random
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+
+/**
+ * Runs [GuidanceLoadGenerator] on the JVM against a [FakeNavigator], with simulated time driven by
+ * Robolectric's main looper.
+ */
+@RunWith(RobolectricTestRunner::class)
+class GuidanceLoadGeneratorTest {
+  private val fakeNavigator = FakeNavigator()
+  private var reports: List<ScenarioReport>? = null
+
+  private val generator =
+    GuidanceLoadGenerator(
+      fakeNavigator.navigator,
+      SCENARIOS,
+      SPEED_MULTIPLIERS,
+      onFinished = { reports = it },
+      random = Random(SEED),
+      cpuTimeMillis = { 0L },
+      allocatedBytes = { 0L },
+    )
+
+  @Test
+  fun replaysEveryScenarioAtEverySpeed() {
+    generator.start()
+    runUntilFinished()
+
+    val reports = checkNotNull(reports)
+    assertEquals(
+      SCENARIOS.flatMap { scenario -> SPEED_MULTIPLIERS.map { scenario.name to it } },
+      reports.map { it.scenarioName to it.speedMultiplier },
+    )
+    for (report in reports) {
+      assertEquals(RouteStatus.OK, report.routeStatus)
+      assertTrue(report.durationMillis <= MAX_RUN_DURATION_MILLIS)
+    }
+    assertEquals(fakeNavigator.routeChangedCount, reports.sumOf { it.rerouteCount })
+    assertEquals(fakeNavigator.arrivalCount, reports.size)
+  }
+
+  @Test
+  fun drawsTheArrivalTimeAtRandom() {
+    generator.start()
+    runUntilFinished()
+
+    assertTrue(checkNotNull(reports).map { it.durationMillis }.distinct().size > 1)
+  }
+
+  @Test
+  fun stopCancelsTheCurrentRun() {
+    generator.start()
+    shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1))
+    generator.stop()
+
+    assertEquals(emptyList<ScenarioReport>(), reports)
+    shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(MAX_RUN_DURATION_MILLIS))
+    assertEquals(0, fakeNavigator.arrivalCount)
+    assertEquals(0, fakeNavigator.routeChangedCount)
+  }
+
+  @Test
+  fun keepsSyntheticEventsFromRegistrySubscribers() {
+    val owner = ResumedLifecycleOwner()
+    val arrivals = mutableListOf<ArrivalEvent>()
+    val subscriber =
+      object : NavigatorEventRegistry.Subscriber {
+        override fun onArrival(arrivalEvent: ArrivalEvent) {
+          arrivals.add(arrivalEvent)
+        }
+      }
+    val registry = NavigatorEventRegistry.forNavigator(fakeNavigator.navigator)
+    registry.subscribe(owner, subscriber)
+    try {
+      generator.start()
+      runUntilFinished()
+      assertTrue(arrivals.isEmpty())
+
+      // Dispatch resumes once the generator has finished.
+      fakeNavigator.reportArrival()
+      shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1))
+      assertEquals(1, arrivals.size)
+    } finally {
+      registry.unsubscribe(subscriber)
+    }
+  }
+
+  private fun runUntilFinished() {
+    val mainLooper = shadowOf(Looper.getMainLooper())
+    repeat(MAX_SIMULATED_SECONDS) {
+      if (reports != null) {
+        return
+      }
+      mainLooper.idleFor(Duration.ofSeconds(1))
+    }
+    fail("The load generator did not finish within $MAX_SIMULATED_SECONDS simulated seconds.")
+  }
+
+  private class ResumedLifecycleOwner : LifecycleOwner {
+    private val registry = LifecycleRegistry(this).apply { currentState = Lifecycle.State.RESUMED }
+
+    override val lifecycle: Lifecycle
+      get() = registry
+  }
+
+  private companion object {
+    const val SEED = 42
+    const val MAX_RUN_DURATION_MILLIS = 60_000L
+    const val MAX_SIMULATED_SECONDS = 30 * 60
+
+    val SCENARIOS =
+      listOf(
+        Scenario("Short", LatLng(37.4220, -122.0841), LatLng(37.4275, -122.0800)),
+        Scenario("Long", LatLng(37.4220, -122.0841), LatLng(37.7749, -122.4194)),
+      )
+    val SPEED_MULTIPLIERS = listOf(1f, 5f)
+  }
+}
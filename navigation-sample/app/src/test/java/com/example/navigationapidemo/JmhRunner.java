@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.regex.Pattern;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs JMH benchmarks from unit tests.
+ *
+ * <p>Benchmarks only run when the build is invoked with {@code -Pbenchmark}, for example {@code
+ * ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*Benchmark'}; otherwise they are skipped so
+ * the regular unit test run stays fast. They run in the test JVM rather than in forked JVMs, so
+ * that they see the same classpath as the tests, and the results are printed to the test output.
+ */
+public final class JmhRunner {
+
+  private JmhRunner() {}
+
+  /** Runs all benchmark methods of {@code benchmarkClass}, or skips the calling test. */
+  public static void run(Class<?> benchmarkClass) throws RunnerException {
+    assumeTrue("Run with -Pbenchmark to run benchmarks.", Boolean.getBoolean("benchmark"));
+    Options options =
+        new OptionsBuilder()
+            .include(Pattern.quote(benchmarkClass.getName()) + "\\.")
+            .forks(0)
+            .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo;
+
+import com.google.android.gms.maps.model.LatLng;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures how long {@link MultiStopRoutePlanner} takes to order a delivery shift's worth of stops,
+ * scattered at random within a few kilometers of the origin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MultiStopRoutePlannerBenchmark {
+  private static final long SEED = 42;
+  private static final double SPREAD_DEGREES = 0.1;
+  private static final LatLng ORIGIN = new LatLng(37.4220, -122.0841);
+
+  @Param({"10", "50", "200"})
+  public int stopCount;
+
+  private List<LatLng> stops;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(SEED);
+    stops = new ArrayList<>(stopCount);
+    for (int i = 0; i < stopCount; i++) {
+      stops.add(
+          new LatLng(
+              ORIGIN.latitude + (random.nextDouble() - 0.5) * SPREAD_DEGREES,
+              ORIGIN.longitude + (random.nextDouble() - 0.5) * SPREAD_DEGREES));
+    }
+  }
+
+  @Benchmark
+  public List<Integer> shortestTour() {
+    return MultiStopRoutePlanner.Companion.shortestTour(ORIGIN, stops);
+  }
+
+  @Test
+  public void runBenchmarks() throws RunnerException {
+    JmhRunner.run(MultiStopRoutePlannerBenchmark.class);
+  }
+}
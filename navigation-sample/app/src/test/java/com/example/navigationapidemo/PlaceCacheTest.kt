@@ -0,0 +1,209 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.navigationapidemo
+
+import android.os.Looper
+import android.util.AtomicFile
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.libraries.places.api.model.Place
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.util.concurrent.Executor
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+
+/**
+ * Tests [PlaceCache] through its own API: places are put and read back, searched by prefix, and
+ * the cache file is reopened to simulate an app restart. Disk I/O runs on the test thread.
+ */
+@RunWith(RobolectricTestRunner::class)
+class PlaceCacheTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
+  private val file by lazy { File(temporaryFolder.root, "place_cache.bin") }
+
+  @Test
+  fun getReturnsThePutPlace() {
+    val cache = openCache()
+
+    cache.put(DEPOT)
+
+    assertPlaceEquals(DEPOT, checkNotNull(cache.get(DEPOT.id!!)))
+    assertNull(cache.get(BAKERY.id!!))
+  }
+
+  @Test
+  fun putPlacesSurviveARestart() {
+    val cache = openCache()
+    cache.put(DEPOT)
+    cache.put(BAKERY)
+
+    val restartedCache = openCache()
+
+    assertPlaceEquals(DEPOT, checkNotNull(restartedCache.get(DEPOT.id!!)))
+    assertPlaceEquals(BAKERY, checkNotNull(restartedCache.get(BAKERY.id!!)))
+  }
+
+  @Test
+  fun onlyTheCachedFieldsAreKept() {
+    val cache = openCache()
+
+    cache.put(DEPOT)
+
+    // The address isn't persisted, so it is dropped before a restart too.
+    assertNull(checkNotNull(cache.get(DEPOT.id!!)).address)
+  }
+
+  @Test
+  fun putBeforeLoadKeepsThePersistedPlaces() {
+    val cache = openCache()
+    cache.put(DEPOT)
+    cache.put(BAKERY)
+
+    // The restarted cache is written to before it has loaded the persisted places.
+    val restartedCache = PlaceCache(AtomicFile(file), CAPACITY, DIRECT_EXECUTOR)
+    restartedCache.put(DOCKS)
+
+    assertEquals(
+      listOf(DOCKS.id, BAKERY.id, DEPOT.id),
+      openCache().search("").map { it.id },
+    )
+  }
+
+  @Test
+  fun missingNamesReadBackAsNull() {
+    val cache = openCache()
+    cache.put(Place.builder().setId("unnamed").setLatLng(LatLng(1.0, 2.0)).build())
+
+    val place = checkNotNull(openCache().get("unnamed"))
+
+    assertNull(place.name)
+    assertEquals(LatLng(1.0, 2.0), place.latLng)
+  }
+
+  @Test
+  fun evictsTheLeastRecentlyUsedPlace() {
+    val cache = openCache()
+    cache.put(DEPOT)
+    cache.put(BAKERY)
+    cache.put(DOCKS)
+    // Reading the depot makes the bakery the least recently used place.
+    cache.get(DEPOT.id!!)
+    cache.put(CUSTOMER)
+
+    assertNull(cache.get(BAKERY.id!!))
+    assertEquals(
+      listOf(CUSTOMER.id, DEPOT.id, DOCKS.id),
+      openCache().search("").map { it.id },
+    )
+  }
+
+  @Test
+  fun searchMatchesTheStartOfAnyWordOfTheName() {
+    val cache = openCache()
+    cache.put(DEPOT)
+    cache.put(BAKERY)
+    cache.put(DOCKS)
+
+    assertEquals(listOf(DOCKS.id, DEPOT.id), cache.search("north").map { it.id })
+    assertEquals(listOf(BAKERY.id), cache.search(" BAK").map { it.id })
+    assertEquals(emptyList<String>(), cache.search("orth").map { it.id })
+  }
+
+  @Test
+  fun discardsAFileWrittenInAnotherFormatVersion() {
+    writeCacheFile(PlaceCache.FORMAT_VERSION - 1, DEPOT)
+
+    val cache = openCache()
+
+    assertEquals(emptyList<Place>(), cache.search(""))
+    cache.put(BAKERY)
+    assertEquals(PlaceCache.FORMAT_VERSION, readFormatVersion())
+    assertEquals(listOf(BAKERY.id), openCache().search("").map { it.id })
+  }
+
+  @Test
+  fun discardsAnUnreadableFile() {
+    file.writeBytes(byteArrayOf(0, 0, 0, PlaceCache.FORMAT_VERSION.toByte(), 0, 0))
+
+    val cache = openCache()
+
+    assertEquals(emptyList<Place>(), cache.search(""))
+    cache.put(DEPOT)
+    assertEquals(listOf(DEPOT.id), openCache().search("").map { it.id })
+  }
+
+  /** Opens the cache file as a restarted app would, and waits until the cache has loaded. */
+  private fun openCache(): PlaceCache {
+    var loaded = false
+    val cache = PlaceCache(AtomicFile(file), CAPACITY, DIRECT_EXECUTOR)
+    cache.load { loaded = true }
+    shadowOf(Looper.getMainLooper()).idle()
+    check(loaded)
+    return cache
+  }
+
+  /** Writes [place] in the current file layout, but tagged with [formatVersion]. */
+  private fun writeCacheFile(formatVersion: Int, place: Place) {
+    DataOutputStream(file.outputStream()).use { output ->
+      output.writeInt(formatVersion)
+      output.writeInt(1)
+      output.writeUTF(place.id!!)
+      output.writeBoolean(true)
+      output.writeUTF(place.name!!)
+      output.writeBoolean(true)
+      output.writeDouble(place.latLng!!.latitude)
+      output.writeDouble(place.latLng!!.longitude)
+      output.writeInt(0)
+    }
+  }
+
+  private fun readFormatVersion(): Int = DataInputStream(file.inputStream()).use { it.readInt() }
+
+  private fun assertPlaceEquals(expected: Place, actual: Place) {
+    assertEquals(expected.id, actual.id)
+    assertEquals(expected.name, actual.name)
+    assertEquals(expected.latLng, actual.latLng)
+    assertEquals(expected.placeTypes, actual.placeTypes)
+  }
+
+  private companion object {
+    const val CAPACITY = 3
+    val DIRECT_EXECUTOR = Executor { it.run() }
+
+    val DEPOT = place("depot", "North Depot", LatLng(37.42, -122.08), "storage")
+    val BAKERY = place("bakery", "Corner Bakery", LatLng(37.39, -122.07), "bakery", "food")
+    val DOCKS = place("docks", "North Docks", LatLng(37.80, -122.40))
+    val CUSTOMER = place("customer", "Ada's Workshop", LatLng(37.77, -122.42))
+
+    fun place(id: String, name: String, latLng: LatLng, vararg placeTypes: String): Place =
+      Place.builder()
+        .setId(id)
+        .setName(name)
+        .setLatLng(latLng)
+        .setPlaceTypes(placeTypes.toList())
+        // Not one of the cached fields, so the cache must not rely on it.
+        .setAddress("1 Main Street")
+        .build()
+  }
+}
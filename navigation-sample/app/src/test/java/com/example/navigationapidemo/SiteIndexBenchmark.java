@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.navigationapidemo;
+
+import com.google.android.gms.maps.model.LatLng;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures {@link SiteIndex} lookups at 10k and 100k sites, scattered at random over a
+ * metropolitan area. The index is imported from CSV and then memory-mapped, as the app loads it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SiteIndexBenchmark {
+  private static final long SEED = 42;
+  private static final double SPREAD_DEGREES = 0.5;
+  private static final LatLng CENTER = new LatLng(37.4220, -122.0841);
+  private static final int QUERY_COUNT = 1024;
+  private static final int SEARCH_LIMIT = 20;
+  private static final String[] STREETS = {
+    "Amphitheatre", "Bayshore", "Charleston", "El Camino", "Grant", "Middlefield", "Rengstorff",
+    "San Antonio", "Shoreline", "Stierlin",
+  };
+
+  @Param({"10000", "100000"})
+  public int siteCount;
+
+  private File file;
+  private SiteIndex siteIndex;
+  private final LatLng[] locations = new LatLng[QUERY_COUNT];
+  private final String[] prefixes = new String[QUERY_COUNT];
+  private int query;
+
+  @Setup
+  public void setUp() throws IOException {
+    Random random = new Random(SEED);
+    StringBuilder csv = new StringBuilder("name,latitude,longitude,placeId\n");
+    for (int i = 0; i < siteCount; i++) {
+      csv.append(STREETS[random.nextInt(STREETS.length)])
+          .append(' ')
+          .append(i)
+          .append(',')
+          .append(CENTER.latitude + (random.nextDouble() - 0.5) * SPREAD_DEGREES)
+          .append(',')
+          .append(CENTER.longitude + (random.nextDouble() - 0.5) * SPREAD_DEGREES)
+          // Half of the sites have no place ID.
+          .append(i % 2 == 0 ? ",site" + i : ",")
+          .append('\n');
+    }
+    file = File.createTempFile("sites", ".bin");
+    byte[] csvBytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    SiteIndex.Companion.fromCsv(new ByteArrayInputStream(csvBytes)).writeTo(file);
+    siteIndex = SiteIndex.Companion.fromMappedFile(file);
+
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      locations[i] =
+          new LatLng(
+              CENTER.latitude + (random.nextDouble() - 0.5) * SPREAD_DEGREES,
+              CENTER.longitude + (random.nextDouble() - 0.5) * SPREAD_DEGREES);
+      // A street name and the leading digits of a site number, as a driver would type them.
+      String street = STREETS[random.nextInt(STREETS.length)];
+      prefixes[i] = street + " " + (1 + random.nextInt(9));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public SiteIndex.Site nearest() {
+    query = (query + 1) % QUERY_COUNT;
+    return siteIndex.nearest(locations[query]);
+  }
+
+  @Benchmark
+  public List<SiteIndex.Site> search() {
+    query = (query + 1) % QUERY_COUNT;
+    return siteIndex.search(prefixes[query], SEARCH_LIMIT);
+  }
+
+  @Test
+  public void runBenchmarks() throws RunnerException {
+    JmhRunner.run(SiteIndexBenchmark.class);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.navigationapidemo;
+
+import com.example.navigationapidemo.TripTelemetry.TrackPoint;
+import com.example.navigationapidemo.TripTelemetry.TrackRecorder;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures the cost of recording a road-snapped location with {@link TripTelemetry}, and reports
+ * the compression ratio of whole trips.
+ *
+ * <p>Trips are synthetic drives shaped like recorded traces: one location per second, at city and
+ * highway speeds, along straight stretches, gentle curves and turns, with the small jitter left
+ * after road snapping. One hour fits in the track buffer at the initial tolerance, while ten hours
+ * make it simplify the track again several times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TripTelemetryBenchmark {
+  private static final long SEED = 42;
+  private static final double METERS_PER_DEGREE = 111_320.0;
+  private static final double START_LATITUDE = 37.4220;
+  private static final double START_LONGITUDE = -122.0841;
+  private static final double METERS_PER_LONGITUDE_DEGREE =
+      METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LATITUDE));
+  private static final double JITTER_METERS = 1.0;
+
+  /** The trip length, in one-second location updates. */
+  @Param({"3600", "36000"})
+  public int pointCount;
+
+  private TrackPoint[] trace;
+  private TrackRecorder recorder;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    trace = syntheticDrive(pointCount, new Random(SEED));
+    recorder = new TrackRecorder();
+    next = 0;
+  }
+
+  /** Records one location, starting the trip over once all of it has been recorded. */
+  @Benchmark
+  public TrackRecorder addPoint() {
+    if (next == trace.length) {
+      recorder.clear();
+      next = 0;
+    }
+    recorder.add(trace[next++]);
+    return recorder;
+  }
+
+  @TearDown
+  public void reportCompression() {
+    TrackRecorder trip = new TrackRecorder();
+    for (TrackPoint point : trace) {
+      trip.add(point);
+    }
+    trip.finish();
+    System.out.printf(
+        Locale.US,
+        "%n%d points: %d kept in %d bytes (%.1fx smaller than raw), "
+            + "%d recompressions, %.0f m tolerance%n",
+        trip.getReceivedPoints(),
+        trip.getKeptPoints(),
+        trip.getTrackBytes(),
+        trip.getCompressionRatio(),
+        trip.getRecompressions(),
+        trip.getToleranceMeters());
+  }
+
+  private static TrackPoint[] syntheticDrive(int pointCount, Random random) {
+    TrackPoint[] points = new TrackPoint[pointCount];
+    double north = 0;
+    double east = 0;
+    double heading = random.nextDouble() * 2 * Math.PI;
+    double turnRate = 0;
+    double speed = 13;
+    for (int i = 0; i < pointCount; i++) {
+      // Every minute or so, pick a new stretch: straight, a gentle curve, or a turn.
+      if (random.nextInt(60) == 0) {
+        double stretch = random.nextDouble();
+        if (stretch < 0.5) {
+          turnRate = 0;
+        } else if (stretch < 0.8) {
+          turnRate = random.nextGaussian() * 0.02;
+        } else {
+          turnRate = 0;
+          heading += (random.nextBoolean() ? 1 : -1) * Math.PI / 2;
+        }
+        speed = random.nextBoolean() ? 8 + random.nextDouble() * 8 : 25 + random.nextDouble() * 8;
+      }
+      heading += turnRate;
+      north += Math.cos(heading) * speed;
+      east += Math.sin(heading) * speed;
+      double latitude =
+          START_LATITUDE + (north + random.nextGaussian() * JITTER_METERS) / METERS_PER_DEGREE;
+      double longitude =
+          START_LONGITUDE
+              + (east + random.nextGaussian() * JITTER_METERS) / METERS_PER_LONGITUDE_DEGREE;
+      points[i] = new TrackPoint(latitude, longitude, i * 1000L);
+    }
+    return points;
+  }
+
+  @Test
+  public void runBenchmarks() throws RunnerException {
+    JmhRunner.run(TripTelemetryBenchmark.class);
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo.layoutdelegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.view.View;
+import com.google.android.libraries.navigation.layoutcustomization.ActiveGuidanceUiState;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationLayoutDelegate;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationReadyUiState;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationUiButton;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationUiButton.ButtonKnownType;
+import com.google.android.libraries.navigation.layoutcustomization.NavigationUiParent;
+import com.google.android.libraries.navigation.layoutcustomization.UiState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.ParameterizedRobolectricTestRunner.Parameters;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Drives every sample {@link NavigationLayoutDelegate} through all of its UI states behind a
+ * {@link ProfilingLayoutDelegate}, and fails when any transition goes over the per-frame budget or
+ * applies more than one {@code ConstraintSet}, as counted by {@link ShadowConstraintSet}.
+ *
+ * <p>The delegates are first run through the states once without profiling, so that class loading
+ * and the one-time layout and {@code ConstraintSet} setup are not counted against the budget.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(shadows = ShadowConstraintSet.class, instrumentedPackages = "androidx.constraintlayout")
+public class LayoutDelegateProfilingTest {
+  private static final int MEASURED_CYCLES = 20;
+  private static final int BUTTON_COUNT = 4;
+
+  // Parameters are created outside of the Robolectric sandbox, so the delegates are named here and
+  // only instantiated by the test.
+  @Parameters(name = "{0}")
+  public static List<String> delegateClassNames() {
+    return Arrays.asList(
+        "StandardUiElementsLayoutDelegate",
+        "StandardUiElementsLayoutDelegateKt",
+        "AllUiElementsLayoutDelegate",
+        "AllUiElementsLayoutDelegateKt",
+        "BottomSheetLayoutDelegate",
+        "BottomSheetLayoutDelegateKt",
+        "BottomSheetLandscapeLayoutDelegate",
+        "BottomSheetLandscapeLayoutDelegateKt");
+  }
+
+  private final String delegateClassName;
+
+  private NavigationLayoutDelegate delegate;
+
+  private NavigationUiParent navigationUiParent;
+  private NavigationReadyUiState navigationReadyUiState;
+  private ActiveGuidanceUiState activeGuidanceUiState;
+  private UiState wideUiState;
+  private UiState narrowUiState;
+  private View firstPrompt;
+  private View secondPrompt;
+
+  public LayoutDelegateProfilingTest(String delegateClassName) {
+    this.delegateClassName = delegateClassName;
+  }
+
+  @Before
+  public void setUp() throws ReflectiveOperationException {
+    delegate =
+        (NavigationLayoutDelegate)
+            Class.forName(getClass().getPackage().getName() + "." + delegateClassName)
+                .getDeclaredConstructor()
+                .newInstance();
+
+    Context context = RuntimeEnvironment.getApplication();
+
+    navigationUiParent = mock(NavigationUiParent.class);
+    when(navigationUiParent.getViewContext()).thenReturn(context);
+
+    // The SDK hands the same element views to every state, so the fakes share them too.
+    View viewport = newView(context);
+    View googleLogo = newView(context);
+    View turnCard = newView(context);
+    View etaCard = newView(context);
+    View speedWidget = newView(context);
+    View tripProgressBar = newView(context);
+
+    navigationReadyUiState = mock(NavigationReadyUiState.class);
+    when(navigationReadyUiState.getViewport()).thenReturn(viewport);
+    when(navigationReadyUiState.getGoogleLogo()).thenReturn(googleLogo);
+    when(navigationReadyUiState.getNavigationReadyButtons()).thenReturn(newButtons(context));
+
+    activeGuidanceUiState = mock(ActiveGuidanceUiState.class);
+    when(activeGuidanceUiState.getViewport()).thenReturn(viewport);
+    when(activeGuidanceUiState.getGoogleLogo()).thenReturn(googleLogo);
+    when(activeGuidanceUiState.getTurnCard()).thenReturn(turnCard);
+    when(activeGuidanceUiState.getEtaCard()).thenReturn(etaCard);
+    when(activeGuidanceUiState.getSpeedWidget()).thenReturn(speedWidget);
+    when(activeGuidanceUiState.getTripProgressBar()).thenReturn(tripProgressBar);
+    when(activeGuidanceUiState.getActiveGuidanceButtons()).thenReturn(newButtons(context));
+
+    wideUiState = mock(UiState.class);
+    when(wideUiState.isWideMode()).thenReturn(true);
+    narrowUiState = mock(UiState.class);
+    when(narrowUiState.isWideMode()).thenReturn(false);
+
+    firstPrompt = newView(context);
+    secondPrompt = newView(context);
+  }
+
+  @Test
+  public void allTransitionsStayWithinBudget() {
+    runAllStates(delegate);
+
+    ProfilingLayoutDelegate profilingDelegate =
+        new ProfilingLayoutDelegate(
+            delegate,
+            ProfilingLayoutDelegate.DEFAULT_BUDGET_MILLIS,
+            ShadowConstraintSet::getApplyCount);
+    for (int i = 0; i < MEASURED_CYCLES; i++) {
+      runAllStates(profilingDelegate);
+    }
+
+    profilingDelegate.logStats();
+    // Every delegate lays out the navigation-ready state with a ConstraintSet, so a zero here means
+    // the shadow was not installed and the constraint set budget was never checked.
+    assertEquals(
+        1,
+        profilingDelegate
+            .getStats(ProfilingLayoutDelegate.Transition.ENTER_NAVIGATION_READY)
+            .getMaxConstraintSetApplies());
+    profilingDelegate.checkWithinBudget();
+  }
+
+  /** Runs through every UI state the SDK can put a delegate in, ending where it started. */
+  private void runAllStates(NavigationLayoutDelegate delegate) {
+    delegate.onEnterNavigationReady(navigationUiParent, navigationReadyUiState);
+    delegate.onSizeChanged(navigationUiParent, wideUiState);
+    delegate.onSizeChanged(navigationUiParent, narrowUiState);
+    delegate.onEnterActiveGuidance(
+        navigationUiParent, navigationReadyUiState, activeGuidanceUiState);
+    delegate.onShowPrompt(navigationUiParent, firstPrompt);
+    delegate.onChangePrompt(navigationUiParent, firstPrompt, secondPrompt);
+    delegate.onHidePrompt(navigationUiParent, secondPrompt);
+    delegate.onSizeChanged(navigationUiParent, wideUiState);
+    delegate.onSizeChanged(navigationUiParent, narrowUiState);
+    delegate.onLeaveActiveGuidance(
+        navigationUiParent, activeGuidanceUiState, navigationReadyUiState);
+    delegate.onLeaveNavigationReady(navigationUiParent, navigationReadyUiState);
+  }
+
+  private static List<NavigationUiButton> newButtons(Context context) {
+    ButtonKnownType[] types = ButtonKnownType.values();
+    List<NavigationUiButton> buttons = new ArrayList<>();
+    for (int i = 0; i < BUTTON_COUNT; i++) {
+      NavigationUiButton button = mock(NavigationUiButton.class);
+      when(button.getView()).thenReturn(newView(context));
+      when(button.getType()).thenReturn(types[i % types.length]);
+      buttons.add(button);
+    }
+    return buttons;
+  }
+
+  private static View newView(Context context) {
+    View view = new View(context);
+    view.setId(View.generateViewId());
+    return view;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.navigationapidemo.layoutdelegate;
+
+import static org.robolectric.util.reflector.Reflector.reflector;
+
+import androidx.constraintlayout.widget.ConstraintLayout;
+import androidx.constraintlayout.widget.ConstraintSet;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.util.reflector.Direct;
+import org.robolectric.util.reflector.ForType;
+
+/**
+ * Counts every {@link ConstraintSet#applyTo} call before running the real one, so that tests can
+ * budget how many constraint sets a layout delegate applies per transition.
+ *
+ * <p>Robolectric only shadows classes it instruments, so tests using this shadow must add {@code
+ * androidx.constraintlayout} to their {@code instrumentedPackages}.
+ */
+@Implements(ConstraintSet.class)
+public class ShadowConstraintSet {
+  private static long applyCount;
+
+  @RealObject private ConstraintSet realConstraintSet;
+
+  @Implementation
+  protected void applyTo(ConstraintLayout constraintLayout) {
+    applyCount++;
+    reflector(ConstraintSetReflector.class, realConstraintSet).applyTo(constraintLayout);
+  }
+
+  /** Returns the number of {@link ConstraintSet#applyTo} calls made so far. */
+  public static long getApplyCount() {
+    return applyCount;
+  }
+
+  @ForType(ConstraintSet.class)
+  private interface ConstraintSetReflector {
+    @Direct
+    void applyTo(ConstraintLayout constraintLayout);
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.navigationapidemo.baselineprofile
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Generates the Baseline Profile of the `:app` module from the startup and guidance journeys.
+ *
+ * Run `./gradlew :app:generateBaselineProfile` with a device connected; the profile is written to
+ * `app/src/main/generated/baselineProfiles` and packaged into every build.
+ */
+@RunWith(AndroidJUnit4::class)
+@LargeTest
+class BaselineProfileGenerator {
+
+  @get:Rule val rule = BaselineProfileRule()
+
+  @Test
+  fun generate() =
+    rule.collect(packageName = PACKAGE_NAME, includeInStartupProfile = true) {
+      grantPermissions()
+      pressHome()
+      startAndWaitForDemoList()
+      openNavViewDemo()
+      runGuidanceLoadTest()
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.navigationapidemo.baselineprofile
+
+import android.os.SystemClock
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.ExperimentalMetricApi
+import androidx.benchmark.macro.TraceSectionMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Measures the time from creating `NavViewActivity` to its first fully rendered map frame, without
+ * and with the generated Baseline Profile.
+ */
+@OptIn(ExperimentalMetricApi::class)
+@RunWith(AndroidJUnit4::class)
+@LargeTest
+class FirstMapFrameBenchmark {
+
+  @get:Rule val rule = MacrobenchmarkRule()
+
+  @Test fun firstMapFrameWithoutProfile() = firstMapFrame(CompilationMode.None())
+
+  @Test
+  fun firstMapFrameWithBaselineProfile() =
+    firstMapFrame(CompilationMode.Partial(baselineProfileMode = BaselineProfileMode.Require))
+
+  private fun firstMapFrame(compilationMode: CompilationMode) =
+    rule.measureRepeated(
+      packageName = PACKAGE_NAME,
+      metrics = listOf(TraceSectionMetric(FIRST_MAP_FRAME_TRACE)),
+      compilationMode = compilationMode,
+      iterations = ITERATIONS,
+      setupBlock = {
+        grantPermissions()
+        killProcess()
+        startAndWaitForDemoList()
+      },
+    ) {
+      openNavViewDemo()
+      // The trace section ends when the map has loaded its tiles, which has no UI signal to
+      // wait for.
+      SystemClock.sleep(MAP_LOAD_MILLIS)
+    }
+
+  private companion object {
+    const val ITERATIONS = 10
+    const val MAP_LOAD_MILLIS = 5_000L
+  }
+}
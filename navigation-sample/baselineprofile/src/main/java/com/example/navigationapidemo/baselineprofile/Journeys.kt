@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.navigationapidemo.baselineprofile
+
+import android.os.Build
+import android.os.SystemClock
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Until
+import java.util.regex.Pattern
+
+/** The application id of the `:app` module. */
+internal const val PACKAGE_NAME = "com.example.navigationapidemo"
+
+/** Must match `NavigationMetrics.FIRST_MAP_FRAME_TRACE` in the `:app` module. */
+internal const val FIRST_MAP_FRAME_TRACE = "FirstMapFrame"
+
+private const val UI_TIMEOUT_MILLIS = 10_000L
+private const val TERMS_DIALOG_TIMEOUT_MILLIS = 3_000L
+private const val GUIDANCE_LOAD_TEST_MILLIS = 30_000L
+
+/** Button of the Navigation SDK terms dialog, which is only shown on first use. */
+private val TERMS_ACCEPT_BUTTON = Pattern.compile("(?i)got it|ok|accept|i agree")
+
+/** Grants the permissions the splash screen asks for, so no system dialog blocks the journeys. */
+internal fun MacrobenchmarkScope.grantPermissions() {
+  device.executeShellCommand("pm grant $packageName android.permission.ACCESS_FINE_LOCATION")
+  if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+    device.executeShellCommand("pm grant $packageName android.permission.POST_NOTIFICATIONS")
+  }
+}
+
+/** Starts the app from the launcher and waits until the demo list is shown. */
+internal fun MacrobenchmarkScope.startAndWaitForDemoList() {
+  startActivityAndWait()
+  check(device.wait(Until.hasObject(By.res(packageName, "list_view")), UI_TIMEOUT_MILLIS)) {
+    "The demo list was not shown."
+  }
+}
+
+/** Opens `NavViewActivity` from the demo list and waits until its navigation view is shown. */
+internal fun MacrobenchmarkScope.openNavViewDemo() {
+  device.findObject(By.text("NavViewActivity")).click()
+  device.wait(Until.findObject(By.text(TERMS_ACCEPT_BUTTON)), TERMS_DIALOG_TIMEOUT_MILLIS)?.click()
+  check(device.wait(Until.hasObject(By.res(packageName, "navigation_view")), UI_TIMEOUT_MILLIS)) {
+    "The navigation view was not shown."
+  }
+}
+
+/**
+ * Runs the guidance load generator of `NavViewActivity` for a while, which exercises route
+ * starts, rerouting, arrivals and the guidance UI.
+ */
+internal fun MacrobenchmarkScope.runGuidanceLoadTest() {
+  device.findObject(By.res(packageName, "controls_toggle_nav")).click()
+  val loadTestButton = By.res(packageName, "btn_guidance_load_test")
+  val startButton =
+    checkNotNull(device.wait(Until.findObject(loadTestButton), UI_TIMEOUT_MILLIS)) {
+      "The guidance load test button was not shown."
+    }
+  startButton.click()
+  SystemClock.sleep(GUIDANCE_LOAD_TEST_MILLIS)
+  device.findObject(loadTestButton).click()
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.navigationapidemo.baselineprofile
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.StartupTimingMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Measures cold, warm and hot startup to the demo list, without and with the generated Baseline
+ * Profile.
+ */
+@RunWith(Parameterized::class)
+@LargeTest
+class StartupBenchmarks(private val startupMode: StartupMode) {
+
+  @get:Rule val rule = MacrobenchmarkRule()
+
+  @Test fun startupWithoutProfile() = startup(CompilationMode.None())
+
+  @Test
+  fun startupWithBaselineProfile() =
+    startup(CompilationMode.Partial(baselineProfileMode = BaselineProfileMode.Require))
+
+  private fun startup(compilationMode: CompilationMode) =
+    rule.measureRepeated(
+      packageName = PACKAGE_NAME,
+      metrics = listOf(StartupTimingMetric()),
+      compilationMode = compilationMode,
+      startupMode = startupMode,
+      iterations = ITERATIONS,
+      setupBlock = {
+        grantPermissions()
+        pressHome()
+      },
+    ) {
+      startAndWaitForDemoList()
+    }
+
+  companion object {
+    private const val ITERATIONS = 10
+
+    @JvmStatic
+    @Parameterized.Parameters(name = "{0}")
+    fun startupModes() = listOf(StartupMode.COLD, StartupMode.WARM, StartupMode.HOT)
+  }
+}